@@ -0,0 +1,41 @@
+// Allocation-free axis-aligned box tests on primitive coordinates.
+// Same semantics as java.awt.Rectangle.intersects: empty boxes never overlap
+// and touching edges do not count.
+public final class Aabb {
+    private Aabb() {}
+
+    static boolean overlaps(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        if (aw <= 0 || ah <= 0 || bw <= 0 || bh <= 0) return false;
+        return ax < bx + bw && bx < ax + aw && ay < by + bh && by < ay + ah;
+    }
+
+    // Player's collision box as used by the trap and goal checks
+    static boolean overlaps(Player p, int bx, int by, int bw, int bh) {
+        return overlaps((int) p.x, (int) p.y, p.w, p.h, bx, by, bw, bh);
+    }
+
+    // Box a moving by (adx, ady) against box b moving by (bdx, bdy) over one
+    // step: true if they overlap at any moment of it. Slab test on a's motion
+    // relative to b; edges that only touch still do not count.
+    static boolean sweptOverlaps(double ax, double ay, double aw, double ah, double adx, double ady,
+                                 double bx, double by, double bw, double bh, double bdx, double bdy) {
+        if (aw <= 0 || ah <= 0 || bw <= 0 || bh <= 0) return false;
+        double vx = adx - bdx, vy = ady - bdy;
+        double enter = 0, exit = 1;
+        if (vx == 0) {
+            if (ax >= bx + bw || bx >= ax + aw) return false;
+        } else {
+            double t0 = (bx - ax - aw) / vx, t1 = (bx + bw - ax) / vx;
+            enter = Math.max(enter, Math.min(t0, t1));
+            exit = Math.min(exit, Math.max(t0, t1));
+        }
+        if (vy == 0) {
+            if (ay >= by + bh || by >= ay + ah) return false;
+        } else {
+            double t0 = (by - ay - ah) / vy, t1 = (by + bh - ay) / vy;
+            enter = Math.max(enter, Math.min(t0, t1));
+            exit = Math.min(exit, Math.max(t0, t1));
+        }
+        return enter < exit;
+    }
+}
\ No newline at end of file
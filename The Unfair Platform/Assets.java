@@ -0,0 +1,143 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Images decoded in parallel off the EDT. Callers get a Handle right away and
+// draw a placeholder until its image arrives. Decoded pixels are kept in an
+// on-disk cache (-Dtup.assetCache=<dir>, default under java.io.tmpdir) keyed
+// by file name, size and modification time, so a warm start reads raw pixels
+// instead of decoding JPEG/PNG again.
+//
+// Cache file layout: "TUPC", width, height, alpha flag (ints), then
+// width * height ARGB ints, row by row.
+public class Assets {
+    static final int CACHE_MAGIC = 0x54555043; // "TUPC"
+    static final File CACHE_DIR = new File(System.getProperty("tup.assetCache",
+            new File(System.getProperty("java.io.tmpdir"), "tup-assets").getPath()));
+
+    // Daemon workers so a slow decode never holds the JVM open
+    static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())), r -> {
+                Thread t = new Thread(r, "asset-loader");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // An image that may still be loading; image is null until it is ready
+    // (or for good if it failed to load)
+    static class Handle {
+        final String path;
+        volatile BufferedImage image;
+
+        Handle(String path) {
+            this.path = path;
+        }
+    }
+
+    static Handle load(String path) {
+        return load(path, null);
+    }
+
+    // ready, if given, runs on the worker just before the image is published,
+    // for follow-up work that should also stay off the render thread
+    static Handle load(String path, Consumer<BufferedImage> ready) {
+        Handle h = new Handle(path);
+        POOL.execute(() -> {
+            try {
+                BufferedImage img = toCompatible(read(new File(path)));
+                if (ready != null) ready.accept(img);
+                h.image = img;
+            } catch (IOException e) {
+                System.out.println("Error loading " + path + ": " + e.getMessage());
+            }
+        });
+        return h;
+    }
+
+    // Cached pixels if they are current, else a full decode that refreshes the cache
+    static BufferedImage read(File f) throws IOException {
+        File cached = new File(CACHE_DIR, f.getName() + "-" + f.length() + "-" + f.lastModified() + ".px");
+        if (cached.isFile()) {
+            try {
+                return readCache(cached);
+            } catch (IOException e) {
+                System.out.println("Ignoring bad asset cache " + cached + ": " + e.getMessage());
+            }
+        }
+        BufferedImage img = ImageIO.read(f);
+        if (img == null) throw new IOException("Unreadable image " + f);
+        try {
+            writeCache(cached, img);
+        } catch (IOException e) {
+            System.out.println("Could not cache " + f + ": " + e.getMessage());
+        }
+        return img;
+    }
+
+    static BufferedImage readCache(File f) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining()) if (ch.read(header) < 0) throw new EOFException("Truncated");
+            header.flip();
+            if (header.getInt() != CACHE_MAGIC) throw new IOException("Bad magic");
+            int w = header.getInt(), h = header.getInt();
+            boolean alpha = header.getInt() != 0;
+            if (w <= 0 || h <= 0 || ch.size() != 16 + 4L * w * h) throw new IOException("Bad size");
+            IntBuffer px = ch.map(FileChannel.MapMode.READ_ONLY, 16, 4L * w * h).asIntBuffer();
+            BufferedImage img = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            int[] row = new int[w];
+            for (int y = 0; y < h; y++) {
+                px.get(row);
+                img.getRaster().setDataElements(0, y, w, 1, row); // keeps the image accelerable
+            }
+            return img;
+        }
+    }
+
+    static void writeCache(File f, BufferedImage img) throws IOException {
+        if (!CACHE_DIR.isDirectory() && !CACHE_DIR.mkdirs()) throw new IOException("Cannot create " + CACHE_DIR);
+        int w = img.getWidth(), h = img.getHeight();
+        File tmp = File.createTempFile("asset", ".tmp", CACHE_DIR);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(w);
+            out.writeInt(h);
+            out.writeInt(img.getColorModel().hasAlpha() ? 1 : 0);
+            int[] row = new int[w];
+            for (int y = 0; y < h; y++) {
+                img.getRGB(0, y, w, 1, row, 0, w);
+                for (int v : row) out.writeInt(v);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        // Readers only ever see a complete file
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Same pixels in the screen's native layout, so drawing needs no conversion
+    static BufferedImage toCompatible(BufferedImage img) {
+        if (GraphicsEnvironment.isHeadless()) return img;
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        int transparency = img.getColorModel().getTransparency();
+        if (img.getColorModel().equals(gc.getColorModel(transparency))) return img;
+        BufferedImage out = gc.createCompatibleImage(img.getWidth(), img.getHeight(), transparency);
+        Graphics2D g = out.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return out;
+    }
+}
@@ -0,0 +1,74 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+// One level's background, resampled to the panel size with the dim overlay
+// baked in, held in an accelerated surface so a frame costs a single unscaled
+// blit. Rebaked only when the source image or the size changes; a lost surface
+// is refilled from the baked copy without resampling again. The asset loader
+// normally bakes ahead of time via prepare(), so the render thread never has to.
+public class BackgroundLayer {
+    static final Color DIM = new Color(0, 0, 0, 80); // 80/255 ≈ 31% darkness
+
+    // Panel-sized, dimmed copy of source; survives surface loss
+    record Baked(BufferedImage source, int width, int height, BufferedImage image) {}
+
+    volatile Baked baked;
+    Baked shown; // what surface holds; render thread only
+    VolatileImage surface;
+    GraphicsConfiguration gc;
+
+    // Draws the background at 0,0; false if there is no image to draw yet
+    boolean draw(Graphics2D g, BufferedImage src, int w, int h) {
+        if (src == null) return false;
+        Baked b = baked;
+        if (b == null || b.source() != src || b.width() != w || b.height() != h) b = prepare(src, w, h);
+
+        GraphicsConfiguration target = g.getDeviceConfiguration();
+        if (target != gc || b != shown) {
+            flush();
+            gc = target;
+            shown = b;
+        }
+        do {
+            int valid = surface == null ? VolatileImage.IMAGE_INCOMPATIBLE : surface.validate(gc);
+            if (valid == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (surface != null) surface.flush();
+                surface = gc.createCompatibleVolatileImage(w, h, Transparency.OPAQUE);
+                fill();
+            } else if (valid == VolatileImage.IMAGE_RESTORED) {
+                fill();
+            }
+            g.drawImage(surface, 0, 0, null);
+        } while (surface.contentsLost());
+        return true;
+    }
+
+    // Safe to call from any thread
+    Baked prepare(BufferedImage src, int w, int h) {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        // Done once per level, so use the good filter
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.setColor(DIM);
+        g.fillRect(0, 0, w, h);
+        g.dispose();
+        Baked b = new Baked(src, w, h, img);
+        baked = b;
+        return b;
+    }
+
+    void fill() {
+        Graphics2D g = surface.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(shown.image(), 0, 0, null);
+        g.dispose();
+    }
+
+    void flush() {
+        if (surface != null) surface.flush();
+        surface = null;
+    }
+}
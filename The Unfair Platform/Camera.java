@@ -1,13 +1,32 @@
-public class Camera {
-    double x, y, w, h, tx, ty;
-    public Camera(double x, double y, double w, double h) { this.x=x; this.y=y; this.w=w; this.h=h; }
-
-    void updateTarget(Player p) { tx = p.x + p.w/2 - w/2; ty = p.y + p.h/2 - h/2; }
-
-    void lerpToTarget(double s) {
-        x += (tx - x)*s;
-        y += (ty - y)*s;
-        if(x<0)x=0;
-        if(y<0)y=0;
-    }
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class Camera {
+    double x, y, w, h, tx, ty;
+    double prevX, prevY;
+    public Camera(double x, double y, double w, double h) { this.x=x; this.y=y; this.w=w; this.h=h; prevX=x; prevY=y; }
+
+    void savePrevious() { prevX = x; prevY = y; }
+
+    void updateTarget(Player p) { tx = p.x + p.w/2 - w/2; ty = p.y + p.h/2 - h/2; }
+
+    void lerpToTarget(double s) {
+        x += (tx - x)*s;
+        y += (ty - y)*s;
+        if(x<0)x=0;
+        if(y<0)y=0;
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeDouble(x); out.writeDouble(y);
+        out.writeDouble(tx); out.writeDouble(ty);
+        out.writeDouble(prevX); out.writeDouble(prevY);
+    }
+
+    void readState(DataInput in) throws IOException {
+        x = in.readDouble(); y = in.readDouble();
+        tx = in.readDouble(); ty = in.readDouble();
+        prevX = in.readDouble(); prevY = in.readDouble();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+// Level tiles split into SIZE x SIZE chunks of one byte per cell, each with a
+// solidity bitset (one bit per cell, two chunk rows per long) that collision
+// queries test a word at a time. Solid bits start out as the tiles with id 1;
+// dynamic solids such as fake tiles are layered on with setSolid().
+//
+// Levels built in code keep every chunk in memory. Levels backed by a
+// LevelFile are paged: stream() keeps the chunks around a point resident,
+// loading the next ring on a background thread and evicting chunks that
+// drift out of range, so memory stays flat however wide the level is.
+// Only the thread that calls stream()/get() touches the chunk table; the
+// loader thread just reads the file and hands chunks back through a queue.
+// LevelFile checks on opening that every chunk is in the file, so a read
+// cannot come up short halfway through a level.
+public class ChunkedTiles {
+    static final int SHIFT = 5;
+    static final int SIZE = 1 << SHIFT;
+    static final int MASK = SIZE - 1;
+    static final int WORDS = SIZE * SIZE / 64;
+    static final int SOLID = 1; // tile id that blocks movement
+
+    // One shared loader for all maps; daemon so it never holds the JVM open
+    static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chunk-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    final int cols, rows;
+    final int chunkCols, chunkRows;
+    final byte[][] chunks;
+    final long[][] solid;
+    final LevelFile source; // null: built in memory, never evicted
+
+    // Streaming state, file-backed levels only
+    boolean async = true;
+    int loadRadiusX = 1, loadRadiusY = 1;
+    final byte[] inFlight;
+    final ConcurrentLinkedQueue<Loaded> arrived = new ConcurrentLinkedQueue<>();
+    int[] residentList = new int[16];
+    int residentCount = 0;
+    IntConsumer onLoad; // told the index of each chunk installed from the file
+
+    // Counters
+    long loads, syncLoads, evictions;
+
+    record Loaded(int index, byte[] data) {}
+
+    public ChunkedTiles(int cols, int rows) {
+        this(cols, rows, null);
+    }
+
+    public ChunkedTiles(int cols, int rows, LevelFile source) {
+        this.cols = cols;
+        this.rows = rows;
+        this.source = source;
+        chunkCols = (cols + MASK) >> SHIFT;
+        chunkRows = (rows + MASK) >> SHIFT;
+        chunks = new byte[chunkCols * chunkRows][];
+        solid = new long[chunkCols * chunkRows][];
+        inFlight = new byte[source == null ? 0 : chunks.length];
+    }
+
+    int get(int r, int c) {
+        if (r < 0 || c < 0 || r >= rows || c >= cols) return 0;
+        int idx = (r >> SHIFT) * chunkCols + (c >> SHIFT);
+        byte[] ch = chunks[idx];
+        if (ch == null) {
+            if (source == null) return 0;
+            ch = loadNow(idx); // missed the prefetch
+        }
+        return ch[((r & MASK) << SHIFT) | (c & MASK)];
+    }
+
+    void set(int r, int c, int t) {
+        int idx = (r >> SHIFT) * chunkCols + (c >> SHIFT);
+        byte[] ch = chunks[idx];
+        if (ch == null) {
+            ch = chunks[idx] = new byte[SIZE * SIZE];
+            solid[idx] = new long[WORDS];
+        }
+        ch[((r & MASK) << SHIFT) | (c & MASK)] = (byte) t;
+        setSolid(r, c, t == SOLID);
+    }
+
+    boolean isSolid(int r, int c) {
+        if (r < 0 || c < 0 || r >= rows || c >= cols) return false;
+        long[] bits = solidChunk((r >> SHIFT) * chunkCols + (c >> SHIFT));
+        if (bits == null) return false;
+        int bit = ((r & MASK) << SHIFT) | (c & MASK);
+        return (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+
+    // Any solid cell in row r between columns c0 and c1 inclusive (clamped to the map)
+    boolean solidSpan(int r, int c0, int c1) {
+        if (r < 0 || r >= rows) return false;
+        c0 = Math.max(c0, 0);
+        c1 = Math.min(c1, cols - 1);
+        int rowBase = (r >> SHIFT) * chunkCols;
+        int shift = (r & 1) << SHIFT; // a row is the low or high half of its word
+        int word = (r & MASK) >> 1;
+        while (c0 <= c1) {
+            int end = Math.min(c1, c0 | MASK); // stay inside this chunk
+            long[] bits = solidChunk(rowBase + (c0 >> SHIFT));
+            if (bits != null) {
+                long mask = (-1L >>> (63 - (end - c0))) << (shift + (c0 & MASK));
+                if ((bits[word] & mask) != 0) return true;
+            }
+            c0 = end + 1;
+        }
+        return false;
+    }
+
+    // Any solid cell in column c between rows r0 and r1 inclusive (clamped to the map)
+    boolean solidColumn(int c, int r0, int r1) {
+        if (c < 0 || c >= cols) return false;
+        for (int r = Math.max(r0, 0); r <= Math.min(r1, rows - 1); r++)
+            if (isSolid(r, c)) return true;
+        return false;
+    }
+
+    boolean resident(int r, int c) {
+        return r >= 0 && c >= 0 && r < rows && c < cols && solid[(r >> SHIFT) * chunkCols + (c >> SHIFT)] != null;
+    }
+
+    // Only touches resident chunks; onLoad re-applies dynamic solids on reload
+    void setSolid(int r, int c, boolean s) {
+        if (r < 0 || c < 0 || r >= rows || c >= cols) return;
+        long[] bits = solid[(r >> SHIFT) * chunkCols + (c >> SHIFT)];
+        if (bits == null) return;
+        int bit = ((r & MASK) << SHIFT) | (c & MASK);
+        if (s) bits[bit >> 6] |= 1L << bit;
+        else bits[bit >> 6] &= ~(1L << bit);
+    }
+
+    long[] solidChunk(int idx) {
+        long[] bits = solid[idx];
+        if (bits == null && source != null) {
+            loadNow(idx);
+            bits = solid[idx];
+        }
+        return bits;
+    }
+
+    // Radius, in chunks, kept loaded around the streaming point
+    void setStreamRadius(int widthPx, int heightPx, int tileSize) {
+        int chunkPx = SIZE * tileSize;
+        loadRadiusX = widthPx / chunkPx / 2 + 2;
+        loadRadiusY = heightPx / chunkPx / 2 + 2;
+    }
+
+    // Installs finished loads, requests chunks around (r, c) and evicts far ones
+    void stream(int r, int c) {
+        if (source == null) return;
+        Loaded done;
+        while ((done = arrived.poll()) != null) install(done.index(), done.data());
+
+        int cx = Math.max(0, Math.min(c >> SHIFT, chunkCols - 1));
+        int cy = Math.max(0, Math.min(r >> SHIFT, chunkRows - 1));
+        for (int y = Math.max(0, cy - loadRadiusY); y <= Math.min(chunkRows - 1, cy + loadRadiusY); y++)
+            for (int x = Math.max(0, cx - loadRadiusX); x <= Math.min(chunkCols - 1, cx + loadRadiusX); x++) {
+                int i = y * chunkCols + x;
+                if (chunks[i] == null && inFlight[i] == 0) request(i);
+            }
+
+        // Evict with one chunk of slack so walking along a border doesn't thrash
+        int keep = 0;
+        for (int n = 0; n < residentCount; n++) {
+            int i = residentList[n];
+            int x = i % chunkCols, y = i / chunkCols;
+            if (Math.abs(x - cx) > loadRadiusX + 1 || Math.abs(y - cy) > loadRadiusY + 1) {
+                chunks[i] = null;
+                solid[i] = null;
+                evictions++;
+            } else {
+                residentList[keep++] = i;
+            }
+        }
+        residentCount = keep;
+    }
+
+    void request(int i) {
+        if (!async) {
+            loadNow(i);
+            return;
+        }
+        inFlight[i] = 1;
+        LOADER.execute(() -> arrived.add(new Loaded(i, read(i))));
+    }
+
+    byte[] loadNow(int i) {
+        syncLoads++;
+        byte[] data = read(i);
+        install(i, data);
+        return data;
+    }
+
+    void install(int i, byte[] data) {
+        inFlight[i] = 0;
+        if (chunks[i] != null) return; // a synchronous load got there first
+        chunks[i] = data;
+        long[] bits = new long[WORDS];
+        for (int b = 0; b < data.length; b++)
+            if (data[b] == SOLID) bits[b >> 6] |= 1L << b;
+        solid[i] = bits;
+        loads++;
+        if (residentCount == residentList.length) residentList = Arrays.copyOf(residentList, residentCount * 2);
+        residentList[residentCount++] = i;
+        if (onLoad != null) onLoad.accept(i);
+    }
+
+    byte[] read(int i) {
+        byte[] data = new byte[SIZE * SIZE];
+        try {
+            source.readChunk(i % chunkCols, i / chunkCols, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return data;
+    }
+
+    int residentChunks() {
+        return source == null ? chunks.length : residentCount;
+    }
+}
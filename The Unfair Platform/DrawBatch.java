@@ -0,0 +1,201 @@
+import java.awt.*;
+import java.util.Arrays;
+
+// Reusable command buffer for the map's flat-coloured primitives. Entities
+// emit rects and triangles with a packed ARGB colour instead of calling
+// Graphics2D directly; flush() groups the commands by (layer, kind, colour),
+// sets each colour once, merges runs of abutting same-colour fills into one
+// fillRect, and draws. Nothing is allocated per frame once the arrays and the
+// colour cache have grown to fit.
+//
+// Layers keep the painter's order between groups of entities; within a
+// layer, fills are drawn before outlines, and commands with the same state
+// keep their emit order.
+public class DrawBatch {
+    static final int FILL_RECT = 0, FILL_TRI = 1, DRAW_RECT = 2, DRAW_TRI = 3;
+    static final int STRIDE = 6; // coordinates per command
+
+    int layer = 0;
+    int count = 0;
+    int[] stateOf = new int[64];
+    int[] coords = new int[64 * STRIDE];
+
+    // Distinct states emitted since the last flush, found through an open
+    // addressing table of state index + 1
+    long[] stateKeys = new long[16];
+    int stateCount = 0;
+    int[] table = new int[64];
+
+    // Flush scratch
+    int[] sortedStates = new int[16];
+    int[] bucketStart = new int[17];
+    int[] order = new int[64];
+    final int[] xs = new int[3], ys = new int[3];
+
+    // Colours by ARGB value, so setColor needs no new Color
+    int[] colorKeys = new int[64];
+    Color[] colors = new Color[64];
+    int colorCount = 0;
+
+    // Counters for the last flush
+    int commands, drawCalls, colorChanges;
+
+    void fillRect(int x, int y, int w, int h, int argb) {
+        add(FILL_RECT, argb, x, y, w, h, 0, 0);
+    }
+
+    void drawRect(int x, int y, int w, int h, int argb) {
+        add(DRAW_RECT, argb, x, y, w, h, 0, 0);
+    }
+
+    void fillTriangle(int x1, int y1, int x2, int y2, int x3, int y3, int argb) {
+        add(FILL_TRI, argb, x1, y1, x2, y2, x3, y3);
+    }
+
+    void drawTriangle(int x1, int y1, int x2, int y2, int x3, int y3, int argb) {
+        add(DRAW_TRI, argb, x1, y1, x2, y2, x3, y3);
+    }
+
+    static int argb(int r, int g, int b, int a) {
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    void add(int kind, int argb, int a, int b, int c, int d, int e, int f) {
+        if (count == stateOf.length) {
+            stateOf = Arrays.copyOf(stateOf, count * 2);
+            coords = Arrays.copyOf(coords, count * 2 * STRIDE);
+        }
+        stateOf[count] = state((long) layer << 40 | (long) kind << 32 | (argb & 0xFFFFFFFFL));
+        int o = count * STRIDE;
+        coords[o] = a; coords[o + 1] = b; coords[o + 2] = c;
+        coords[o + 3] = d; coords[o + 4] = e; coords[o + 5] = f;
+        count++;
+    }
+
+    int state(long key) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != 0) {
+            int s = table[slot] - 1;
+            if (stateKeys[s] == key) return s;
+            slot = (slot + 1) & mask;
+        }
+        if (stateCount == stateKeys.length) stateKeys = Arrays.copyOf(stateKeys, stateCount * 2);
+        stateKeys[stateCount] = key;
+        table[slot] = ++stateCount;
+        if (stateCount * 2 > table.length) rehash();
+        return stateCount - 1;
+    }
+
+    void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int s = 0; s < stateCount; s++) {
+            int slot = Long.hashCode(stateKeys[s] * 0x9E3779B97F4A7C15L) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = s + 1;
+        }
+    }
+
+    void flush(Graphics2D g) {
+        commands = count;
+        drawCalls = colorChanges = 0;
+        if (count == 0) return;
+
+        // Order the few distinct states, then bucket the commands by state,
+        // keeping emit order inside each bucket
+        if (sortedStates.length < stateCount) {
+            sortedStates = new int[stateKeys.length];
+            bucketStart = new int[stateKeys.length + 1];
+        }
+        for (int s = 0; s < stateCount; s++) {
+            int i = s;
+            while (i > 0 && stateKeys[sortedStates[i - 1]] > stateKeys[s]) {
+                sortedStates[i] = sortedStates[i - 1];
+                i--;
+            }
+            sortedStates[i] = s;
+        }
+        if (order.length < count) order = new int[stateOf.length];
+        Arrays.fill(bucketStart, 0, stateCount + 1, 0);
+        for (int i = 0; i < count; i++) bucketStart[stateOf[i] + 1]++;
+        // bucketStart is indexed by state; lay the buckets out in sorted order
+        int pos = 0;
+        for (int k = 0; k < stateCount; k++) {
+            int s = sortedStates[k];
+            int n = bucketStart[s + 1];
+            bucketStart[s + 1] = pos;
+            pos += n;
+        }
+        for (int i = 0; i < count; i++) order[bucketStart[stateOf[i] + 1]++] = i;
+
+        int current = 0;
+        boolean colorSet = false;
+        int start = 0;
+        for (int k = 0; k < stateCount; k++) {
+            int s = sortedStates[k];
+            int end = bucketStart[s + 1];
+            long key = stateKeys[s];
+            int argb = (int) key;
+            int kind = (int) (key >>> 32) & 0xFF;
+            if (!colorSet || argb != current) {
+                g.setColor(color(argb));
+                current = argb;
+                colorSet = true;
+                colorChanges++;
+            }
+            for (int i = start; i < end; i++) {
+                int o = order[i] * STRIDE;
+                switch (kind) {
+                    case FILL_RECT -> {
+                        int x = coords[o], y = coords[o + 1], w = coords[o + 2], h = coords[o + 3];
+                        // Merge the following fills that continue this one to the right
+                        while (i + 1 < end) {
+                            int n = order[i + 1] * STRIDE;
+                            if (coords[n] != x + w || coords[n + 1] != y || coords[n + 3] != h) break;
+                            w += coords[n + 2];
+                            i++;
+                        }
+                        g.fillRect(x, y, w, h);
+                    }
+                    case DRAW_RECT -> g.drawRect(coords[o], coords[o + 1], coords[o + 2], coords[o + 3]);
+                    default -> {
+                        xs[0] = coords[o]; ys[0] = coords[o + 1];
+                        xs[1] = coords[o + 2]; ys[1] = coords[o + 3];
+                        xs[2] = coords[o + 4]; ys[2] = coords[o + 5];
+                        if (kind == FILL_TRI) g.fillPolygon(xs, ys, 3);
+                        else g.drawPolygon(xs, ys, 3);
+                    }
+                }
+                drawCalls++;
+            }
+            start = end;
+        }
+
+        count = 0;
+        layer = 0;
+        stateCount = 0;
+        Arrays.fill(table, 0);
+    }
+
+    Color color(int argb) {
+        int mask = colors.length - 1;
+        int slot = (argb * 0x9E3779B9 >>> 16) & mask;
+        while (colors[slot] != null) {
+            if (colorKeys[slot] == argb) return colors[slot];
+            slot = (slot + 1) & mask;
+        }
+        Color c = new Color(argb, true);
+        colorKeys[slot] = argb;
+        colors[slot] = c;
+        if (++colorCount * 2 > colors.length) {
+            int[] oldKeys = colorKeys;
+            Color[] old = colors;
+            colorKeys = new int[old.length * 2];
+            colors = new Color[old.length * 2];
+            colorCount = 0;
+            for (int i = 0; i < old.length; i++) if (old[i] != null) color(oldKeys[i]);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A level's moving blocks as parallel arrays, indexed like the broadphase
+// ids. Each block swings along one axis: pos = base + sin(t) * amp. Every
+// block moves every tick, so update() runs as a few flat passes over the
+// arrays, each simple enough for the JIT to unroll and vectorize, instead of
+// one call per block. The swing is split into per-axis amplitudes (zero on
+// the fixed axis) so the passes need no branch on direction.
+public class Enemies {
+    static final int FILL = DrawBatch.argb(80, 20, 120, 255), EDGE = DrawBatch.argb(0, 0, 0, 255);
+
+    final int tile;
+    int count = 0;
+    int[] col = new int[8], row = new int[8];
+    double[] amp = new double[8], spd = new double[8]; // pixels, radians per tick
+    boolean[] horiz = new boolean[8];
+    double[] baseX = new double[8], baseY = new double[8];
+    double[] ampX = new double[8], ampY = new double[8];
+    double[] t = new double[8];
+    double[] cx = new double[8], cy = new double[8];
+    double[] prevCx = new double[8], prevCy = new double[8]; // before the last update, for swept hits
+    double[] swing = new double[8]; // update() scratch
+    int[] drawnX = new int[8], drawnY = new int[8]; // where the last render() put them
+
+    public Enemies(int tile) {
+        this.tile = tile;
+    }
+
+    // a: swing amplitude in pixels; s: phase step per tick
+    int add(int c, int r, double a, double s, boolean h) {
+        if (count == col.length) grow(count * 2);
+        int i = count++;
+        col[i] = c;
+        row[i] = r;
+        amp[i] = a;
+        spd[i] = s;
+        horiz[i] = h;
+        baseX[i] = prevCx[i] = cx[i] = c * tile;
+        baseY[i] = prevCy[i] = cy[i] = r * tile;
+        ampX[i] = h ? a : 0;
+        ampY[i] = h ? 0 : a;
+        t[i] = 0;
+        drawnX[i] = Integer.MIN_VALUE;
+        return i;
+    }
+
+    // The built-in units: amplitude in tiles, speed in pixels per second
+    int addTiles(int c, int r, double ampTiles, double spdPix, boolean h) {
+        return add(c, r, ampTiles * tile, spdPix / 60.0, h);
+    }
+
+    void grow(int n) {
+        col = Arrays.copyOf(col, n); row = Arrays.copyOf(row, n);
+        amp = Arrays.copyOf(amp, n); spd = Arrays.copyOf(spd, n);
+        horiz = Arrays.copyOf(horiz, n);
+        baseX = Arrays.copyOf(baseX, n); baseY = Arrays.copyOf(baseY, n);
+        ampX = Arrays.copyOf(ampX, n); ampY = Arrays.copyOf(ampY, n);
+        t = Arrays.copyOf(t, n);
+        cx = Arrays.copyOf(cx, n); cy = Arrays.copyOf(cy, n);
+        prevCx = Arrays.copyOf(prevCx, n); prevCy = Arrays.copyOf(prevCy, n);
+        swing = Arrays.copyOf(swing, n);
+        drawnX = Arrays.copyOf(drawnX, n); drawnY = Arrays.copyOf(drawnY, n);
+    }
+
+    void update() {
+        int n = count;
+        System.arraycopy(cx, 0, prevCx, 0, n);
+        System.arraycopy(cy, 0, prevCy, 0, n);
+        for (int i = 0; i < n; i++) t[i] += spd[i];
+        for (int i = 0; i < n; i++) swing[i] = Math.sin(t[i]);
+        // base + sin * 0 is exactly base, so the fixed axis stays put
+        for (int i = 0; i < n; i++) cx[i] = baseX[i] + swing[i] * ampX[i];
+        for (int i = 0; i < n; i++) cy[i] = baseY[i] + swing[i] * ampY[i];
+    }
+
+    boolean hits(int i, Player p) { return Aabb.overlaps(p, (int) cx[i], (int) cy[i], tile, tile); }
+
+    // Whether the player and block i met at any point of the last step,
+    // with both moving, so a fast player cannot pass through between ticks
+    boolean sweptHits(int i, Player p) {
+        return Aabb.sweptOverlaps(p.prevX, p.prevY, p.w, p.h, p.x - p.prevX, p.y - p.prevY,
+                prevCx[i], prevCy[i], tile, tile, cx[i] - prevCx[i], cy[i] - prevCy[i]);
+    }
+
+    void render(DrawBatch b, Viewport view) {
+        for (int i = 0; i < count; i++) {
+            if (view.cullEntity(cx[i], cy[i], tile, tile)) continue;
+            int x = drawnX[i] = (int) cx[i], y = drawnY[i] = (int) cy[i];
+            b.fillRect(x, y, tile, tile, FILL);
+            b.drawRect(x, y, tile, tile, EDGE);
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeDouble(cx[i]); out.writeDouble(cy[i]); out.writeDouble(t[i]);
+            out.writeDouble(prevCx[i]); out.writeDouble(prevCy[i]);
+        }
+    }
+
+    void readState(DataInput in) throws IOException {
+        for (int i = 0; i < count; i++) {
+            cx[i] = in.readDouble(); cy[i] = in.readDouble(); t[i] = in.readDouble();
+            prevCx[i] = in.readDouble(); prevCy[i] = in.readDouble();
+        }
+    }
+}
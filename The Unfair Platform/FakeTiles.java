@@ -0,0 +1,177 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A level's fake tiles as parallel arrays, indexed like the broadphase ids.
+// A solid fake holds the player like a real tile until touched; then it
+// vanishes at once (level 2) or fades out first (animated, level 3), and
+// comes back RESPAWN ticks after it went. Nothing counts down per tick: the
+// fade's end and the respawn are events on the map's TimerWheel, and the fade
+// alpha is worked out from the tick the fade started. Touching and timer
+// events list the fakes whose solidity changed in changed[].
+public class FakeTiles {
+    static final int TOUCH = 2; // reach of the trigger around the tile, in pixels
+    static final int RESPAWN = 180;
+    static final int FADE_FRAMES = 30; // about 0.5 seconds at 60 FPS
+    static final int FILL = DrawBatch.argb(90, 60, 30, 0), EDGE = DrawBatch.argb(70, 40, 20, 0);
+
+    final int tile;
+    int count = 0;
+    int[] col = new int[8], row = new int[8];
+    int[] x = new int[8], y = new int[8];
+    boolean[] animated = new boolean[8];
+    boolean[] solid = new boolean[8];
+    boolean[] fading = new boolean[8];
+    boolean[] faded = new boolean[8]; // fade finished, waiting to respawn
+    int[] fadeStart = new int[8]; // trap-clock tick the fade began
+    int[] due = new int[8];       // tick of the pending timer event, or -1
+    int[] drawn = new int[8];     // shade() the last render() used, for repaint tracking
+    int[] changed = new int[16];
+    int changedCount = 0;
+
+    public FakeTiles(int tile) {
+        this.tile = tile;
+    }
+
+    int add(int c, int r, boolean anim) {
+        if (count == col.length) grow(count * 2);
+        int i = count++;
+        col[i] = c;
+        row[i] = r;
+        x[i] = c * tile;
+        y[i] = r * tile;
+        animated[i] = anim;
+        drawn[i] = -2;
+        reset(i);
+        return i;
+    }
+
+    void grow(int n) {
+        col = Arrays.copyOf(col, n); row = Arrays.copyOf(row, n);
+        x = Arrays.copyOf(x, n); y = Arrays.copyOf(y, n);
+        animated = Arrays.copyOf(animated, n);
+        solid = Arrays.copyOf(solid, n);
+        fading = Arrays.copyOf(fading, n);
+        faded = Arrays.copyOf(faded, n);
+        fadeStart = Arrays.copyOf(fadeStart, n);
+        due = Arrays.copyOf(due, n);
+        drawn = Arrays.copyOf(drawn, n);
+    }
+
+    void reset(int i) {
+        solid[i] = true;
+        fading[i] = false;
+        faded[i] = false;
+        fadeStart[i] = 0;
+        due[i] = -1;
+    }
+
+    // Resets every fake; the ones that were not solid are listed in changed[].
+    // The caller clears the timer wheel.
+    void reset() {
+        changedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!solid[i]) markChanged(i);
+            reset(i);
+        }
+    }
+
+    void markChanged(int i) {
+        if (changedCount == changed.length) changed = Arrays.copyOf(changed, changedCount * 2);
+        changed[changedCount++] = i;
+    }
+
+    // Sets fake i off if it is solid and the player is touching it. Solid fakes
+    // hold the player off by a fraction of a pixel, so standing on or bumping
+    // into one is what counts.
+    void touch(int i, Player p, TimerWheel timers) {
+        if (!solid[i] || !touches(i, p)) return;
+        if (!animated[i]) {
+            solid[i] = false;
+            markChanged(i);
+            after(i, RESPAWN - 1, timers);
+        } else if (!fading[i]) {
+            fading[i] = true;
+            fadeStart[i] = timers.now;
+            after(i, FADE_FRAMES - 1, timers);
+        }
+    }
+
+    // Timer event for fake i: the fade is done, or it is time to come back
+    void fire(int i, TimerWheel timers) {
+        if (fading[i] && !faded[i]) {
+            solid[i] = false;
+            faded[i] = true;
+            after(i, RESPAWN - 1, timers);
+        } else {
+            reset(i);
+        }
+        markChanged(i);
+    }
+
+    void after(int i, int delay, TimerWheel timers) {
+        due[i] = timers.now + delay;
+        timers.schedule(delay, i);
+    }
+
+    // Puts the pending events of restored fakes back on a cleared wheel
+    void schedule(TimerWheel timers) {
+        for (int i = 0; i < count; i++)
+            if (due[i] >= 0) timers.schedule(due[i] - timers.now, i);
+    }
+
+    double alpha(int i, int now) {
+        if (!fading[i]) return 1.0; // a level 2 fake still looks solid once gone
+        if (faded[i]) return 0.0;
+        return 1.0 - ((double) (now - fadeStart[i] + 1) / FADE_FRAMES);
+    }
+
+    boolean hits(int i, Player p) {
+        return Aabb.overlaps(p, x[i], y[i], tile, tile);
+    }
+
+    boolean touches(int i, Player p) {
+        return Aabb.overlaps(p, x[i] - TOUCH, y[i] - TOUCH, tile + 2 * TOUCH, tile + 2 * TOUCH);
+    }
+
+    // Alpha fake i is drawn with, -1 if it is not drawn. Without blending the
+    // fade still shows through the colour's own alpha; with it, the fade is
+    // applied a second time, as the old extra composite did
+    int shade(int i, int now, boolean blend) {
+        double alpha = alpha(i, now);
+        if (alpha <= 0) return -1;
+        int a = (int) (alpha * 255);
+        if (animated[i] && blend) a = (int) (a * alpha);
+        return a;
+    }
+
+    void render(DrawBatch b, Viewport view, boolean blend, int now) {
+        for (int i = 0; i < count; i++) {
+            int a = drawn[i] = shade(i, now, blend);
+            if (a < 0 || view.cullEntity(x[i], y[i], tile, tile)) continue;
+            b.fillRect(x[i], y[i], tile, tile, FILL | a << 24);
+            b.drawRect(x[i], y[i], tile, tile, EDGE | a << 24);
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeBoolean(solid[i]);
+            out.writeBoolean(fading[i]);
+            out.writeBoolean(faded[i]);
+            out.writeInt(fadeStart[i]);
+            out.writeInt(due[i]);
+        }
+    }
+
+    void readState(DataInput in) throws IOException {
+        for (int i = 0; i < count; i++) {
+            solid[i] = in.readBoolean();
+            fading[i] = in.readBoolean();
+            faded[i] = in.readBoolean();
+            fadeStart[i] = in.readInt();
+            due[i] = in.readInt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.awt.*;
+
+// The part of the screen the next frame has to redraw. GamePanel.plan()
+// compares what the frame would show with what the last one drew: a moved
+// camera, a fade, a new level or quality tier redraws everything; otherwise
+// only the player and the traps that changed are redrawn, and a frame where
+// nothing changed is not drawn at all. The renderers record what they drew
+// (Spikes.drawn, PlayerSprites.drawnX, ...) for the next comparison.
+public class FrameDamage {
+    final Rectangle area = new Rectangle(); // screen pixels; empty for none
+    final int width, height;
+    volatile boolean everything = true; // set from the event thread on exposure
+    double camX, camY; // camera of the frame being planned
+
+    // What the last drawn frame showed beyond the map and player
+    double drawnCamX = Double.NaN, drawnCamY, drawnFade;
+    int drawnLevel, drawnTier;
+    boolean drawnIntro, drawnBackground, drawnOverlay;
+
+    public FrameDamage(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    void clear() {
+        area.setBounds(0, 0, 0, 0);
+    }
+
+    void all() {
+        area.setBounds(0, 0, width, height);
+    }
+
+    // Marks a screen rectangle, clipped to the screen
+    void add(int x, int y, int w, int h) {
+        int x1 = Math.min(x + w, width), y1 = Math.min(y + h, height);
+        x = Math.max(x, 0);
+        y = Math.max(y, 0);
+        if (x >= x1 || y >= y1) return;
+        if (area.isEmpty()) {
+            area.setBounds(x, y, x1 - x, y1 - y);
+            return;
+        }
+        int ax1 = Math.max(area.x + area.width, x1), ay1 = Math.max(area.y + area.height, y1);
+        area.x = Math.min(area.x, x);
+        area.y = Math.min(area.y, y);
+        area.width = ax1 - area.x;
+        area.height = ay1 - area.y;
+    }
+
+    // Marks a world rectangle; one pixel of slack covers outlines and the
+    // rounding of the camera offset
+    void addWorld(double x, double y, int w, int h) {
+        add((int) Math.floor(x - camX) - 1, (int) Math.floor(y - camY) - 1, w + 3, h + 3);
+    }
+
+    boolean isFull() {
+        return area.x == 0 && area.y == 0 && area.width == width && area.height == height;
+    }
+}
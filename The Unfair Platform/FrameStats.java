@@ -0,0 +1,212 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Where a frame's time goes. The loop brackets each phase with lap(), which
+// adds the time into a histogram per phase (fixed buckets, no allocation, so
+// it stays on in normal play) and into the running frame's totals. Each frame
+// ends with endFrame(), which also emits a FrameEvent for Flight Recorder
+// (java -XX:StartFlightRecording ...). The percentiles are shown by the F3
+// overlay and written by dump(), e.g. on exit with -Dtup.stats=<file>,
+// along with the input latency: key event to the end of the present.
+public class FrameStats {
+    static final int INPUT = 0, PHYSICS = 1, TRAPS = 2, CHECKS = 3, PAINT = 4, PRESENT = 5, FRAME = 6;
+    static final String[] NAMES = {"input", "physics", "traps", "checks", "paint", "present", "frame"};
+    static final int OVERLAY_W = 300, OVERLAY_H = 16 * (NAMES.length + 4) + 6;
+
+    final Histogram[] phases = new Histogram[NAMES.length];
+    final Histogram latency = new Histogram(); // key event to the frame showing it on screen
+    final long[] current = new long[NAMES.length]; // this frame's totals so far
+    int ticks = 0; // ticks run this frame
+    long lastFrame = 0;
+    volatile boolean overlay = false; // toggled with F3 on the event thread
+    // Frames drawn whole or in part, and not drawn: nothing changed, or the
+    // window was iconified or in the background
+    long fullFrames, partialFrames, skippedFrames, throttledFrames;
+    // Map chunks and entities the last drawn frame drew and culled, and
+    // totals over all drawn frames
+    int chunksDrawn, chunksSkipped, entitiesDrawn, entitiesSkipped;
+    long culledFrames, totalChunksDrawn, totalChunksSkipped, totalEntitiesDrawn, totalEntitiesSkipped;
+
+    public FrameStats() {
+        for (int i = 0; i < phases.length; i++) phases[i] = new Histogram();
+    }
+
+    // Records the time since start under phase and returns now, for the next lap
+    long lap(int phase, long start) {
+        long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    void record(int phase, long nanos) {
+        phases[phase].record(nanos);
+        current[phase] += nanos;
+    }
+
+    void tick() {
+        ticks++;
+    }
+
+    void culled(Viewport view) {
+        chunksDrawn = view.chunksDrawn;
+        chunksSkipped = view.chunksSkipped;
+        entitiesDrawn = view.entitiesDrawn;
+        entitiesSkipped = view.entitiesSkipped;
+        culledFrames++;
+        totalChunksDrawn += chunksDrawn;
+        totalChunksSkipped += chunksSkipped;
+        totalEntitiesDrawn += entitiesDrawn;
+        totalEntitiesSkipped += entitiesSkipped;
+    }
+
+    void inputLatency(long nanos) {
+        latency.record(nanos);
+        LatencyEvent e = new LatencyEvent();
+        if (e.shouldCommit()) {
+            e.latency = nanos;
+            e.commit();
+        }
+    }
+
+    // Closes the frame that is being presented now; the frame time is the
+    // interval since the previous one, so a stall anywhere shows up in it
+    void endFrame() {
+        long now = System.nanoTime();
+        if (lastFrame != 0) {
+            current[FRAME] = now - lastFrame;
+            phases[FRAME].record(current[FRAME]);
+        }
+        lastFrame = now;
+        FrameEvent e = new FrameEvent();
+        if (e.shouldCommit()) {
+            e.ticks = ticks;
+            e.frame = current[FRAME];
+            e.input = current[INPUT];
+            e.physics = current[PHYSICS];
+            e.traps = current[TRAPS];
+            e.checks = current[CHECKS];
+            e.paint = current[PAINT];
+            e.present = current[PRESENT];
+            e.commit();
+        }
+        Arrays.fill(current, 0);
+        ticks = 0;
+    }
+
+    void render(Graphics2D g, int x, int y) {
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        g.setColor(new Color(0, 0, 0, 170));
+        g.fillRect(x, y, OVERLAY_W, OVERLAY_H);
+        g.setColor(Color.WHITE);
+        g.drawString(String.format("%-8s %7s %7s %7s  ms", "", "p50", "p99", "max"), x + 6, y += 16);
+        for (int i = 0; i <= NAMES.length; i++) {
+            Histogram h = i < NAMES.length ? phases[i] : latency;
+            g.drawString(String.format("%-8s %7.3f %7.3f %7.3f", i < NAMES.length ? NAMES[i] : "latency",
+                    h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6, h.max / 1e6), x + 6, y += 16);
+        }
+        g.drawString(String.format("frames full %d part %d skip %d bg %d", fullFrames, partialFrames,
+                skippedFrames, throttledFrames), x + 6, y += 16);
+        g.drawString(String.format("drawn/culled chunks %d/%d ents %d/%d", chunksDrawn, chunksSkipped,
+                entitiesDrawn, entitiesSkipped), x + 6, y + 16);
+    }
+
+    void dump(File file) {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("phase,count,p50_ms,p90_ms,p99_ms,max_ms,mean_ms");
+            for (int i = 0; i <= NAMES.length; i++) {
+                Histogram h = i < NAMES.length ? phases[i] : latency;
+                out.printf(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                        i < NAMES.length ? NAMES[i] : "input_latency", h.count,
+                        h.percentile(0.5) / 1e6, h.percentile(0.9) / 1e6, h.percentile(0.99) / 1e6,
+                        h.max / 1e6, h.count == 0 ? 0 : h.total / 1e6 / h.count);
+            }
+            out.println();
+            out.println("full_frames,partial_frames,skipped_frames,throttled_frames");
+            out.printf("%d,%d,%d,%d%n", fullFrames, partialFrames, skippedFrames, throttledFrames);
+            out.println();
+            // Per drawn frame
+            out.println("chunks_drawn,chunks_skipped,entities_drawn,entities_skipped");
+            double n = Math.max(1, culledFrames);
+            out.printf(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f%n", totalChunksDrawn / n, totalChunksSkipped / n,
+                    totalEntitiesDrawn / n, totalEntitiesSkipped / n);
+            System.out.println("Saved frame stats to " + file);
+        } catch (IOException e) {
+            System.out.println("Error saving frame stats: " + e.getMessage());
+        }
+    }
+
+    // Log-linear histogram of nanosecond times: SUB buckets per power of two,
+    // so a bucket is within 1/SUB of its values (12.5%) from 1 ns to minutes
+    static class Histogram {
+        static final int SUB_BITS = 3, SUB = 1 << SUB_BITS;
+        final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+        long count = 0, total = 0, max = 0;
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts[index(nanos)]++;
+            count++;
+            total += nanos;
+            if (nanos > max) max = nanos;
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int e = 63 - Long.numberOfLeadingZeros(v);
+            return (e - SUB_BITS + 1) * SUB + (int) (v >>> (e - SUB_BITS) & (SUB - 1));
+        }
+
+        // Middle of bucket i's range
+        static long value(int i) {
+            if (i < SUB) return i;
+            int e = i / SUB + SUB_BITS - 1, shift = e - SUB_BITS;
+            return ((long) (SUB + i % SUB) << shift) + (1L << shift >> 1);
+        }
+
+        long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(p * count), seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(value(i), max);
+            }
+            return max;
+        }
+    }
+
+    @Name("tup.Frame")
+    @Label("Frame")
+    @Category("The Unfair Platform")
+    @StackTrace(false)
+    static class FrameEvent extends Event {
+        @Label("Ticks") int ticks;
+        @Label("Frame Interval") @Timespan long frame;
+        @Label("Input") @Timespan long input;
+        @Label("Physics") @Timespan long physics;
+        @Label("Traps") @Timespan long traps;
+        @Label("Goal And Death Checks") @Timespan long checks;
+        @Label("Paint") @Timespan long paint;
+        @Label("Present") @Timespan long present;
+    }
+
+    @Name("tup.InputLatency")
+    @Label("Input Latency")
+    @Description("From a key event to the end of presenting the first frame that shows it")
+    @Category("The Unfair Platform")
+    @StackTrace(false)
+    static class LatencyEvent extends Event {
+        @Label("Latency") @Timespan long latency;
+    }
+}
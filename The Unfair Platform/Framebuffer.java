@@ -0,0 +1,114 @@
+import java.awt.*;
+import java.awt.image.VolatileImage;
+
+// The frame at the game's own resolution, kept between frames so only the
+// damaged part is redrawn, then put on a window of any size with a single
+// nearest-neighbour blit: scaled by the largest whole factor that fits, with
+// black bars around it, or with -Dtup.upscale=fit by the largest factor at
+// all. -Dtup.renderScale= (1) draws the frame at that fraction of the game's
+// size, e.g. 0.5 for half resolution. Either way the drawing costs the same
+// in a small window as on a 4K display; only the blit grows.
+public class Framebuffer {
+    final int width, height; // game pixels
+    final int pixelsW, pixelsH; // the image's pixels
+    final double sx, sy; // image pixels per game pixel
+    final boolean integer;
+    VolatileImage image;
+    final Rectangle dest = new Rectangle(); // where present() put the image in the window
+
+    public Framebuffer(int width, int height, double scale, boolean integer) {
+        this.width = width;
+        this.height = height;
+        pixelsW = Math.max(1, (int) Math.round(width * scale));
+        pixelsH = Math.max(1, (int) Math.round(height * scale));
+        sx = (double) pixelsW / width;
+        sy = (double) pixelsH / height;
+        this.integer = integer;
+    }
+
+    static Framebuffer fromProperties(int width, int height) {
+        double scale = 1;
+        try {
+            scale = Double.parseDouble(System.getProperty("tup.renderScale", "1"));
+        } catch (NumberFormatException e) {
+            System.out.println("Bad tup.renderScale: " + e.getMessage());
+        }
+        if (!(scale > 0 && scale <= 4)) scale = 1;
+        return new Framebuffer(width, height, scale, !"fit".equals(System.getProperty("tup.upscale")));
+    }
+
+    // Brings the image up to date with the game's damaged area, redrawing it
+    // whole if its contents were lost; returns whether the whole frame was drawn
+    boolean paint(GamePanel game, GraphicsConfiguration gc, double alpha) {
+        int valid = image == null ? VolatileImage.IMAGE_INCOMPATIBLE : image.validate(gc);
+        if (valid == VolatileImage.IMAGE_INCOMPATIBLE) {
+            if (image != null) image.flush();
+            image = gc.createCompatibleVolatileImage(pixelsW, pixelsH, Transparency.OPAQUE);
+        }
+        if (valid != VolatileImage.IMAGE_OK) game.damage.all();
+        Rectangle a = game.damage.area;
+        if (a.isEmpty()) return false;
+        Graphics2D g = image.createGraphics();
+        try {
+            if (sx == 1 && sy == 1) {
+                g.clipRect(a.x, a.y, a.width, a.height);
+                return game.render(g, alpha);
+            }
+            // Clip in the image's whole pixels, one more all round: scaled
+            // outlines snap to a pixel that can lie past the damage's slack
+            int x0 = (int) Math.floor(a.x * sx) - 1, y0 = (int) Math.floor(a.y * sy) - 1;
+            g.clipRect(x0, y0, (int) Math.ceil((a.x + a.width) * sx) + 1 - x0,
+                    (int) Math.ceil((a.y + a.height) * sy) + 1 - y0);
+            g.scale(sx, sy);
+            return game.render(g, alpha);
+        } finally {
+            g.dispose();
+            game.damage.clear(); // a repeated paint, e.g. on exposure, only presents
+        }
+    }
+
+    // Where the image goes in a window of w x h
+    void place(int w, int h) {
+        double s = Math.min((double) w / pixelsW, (double) h / pixelsH);
+        if (integer && s >= 1) s = Math.floor(s);
+        int dw = Math.max(1, (int) (pixelsW * s)), dh = Math.max(1, (int) (pixelsH * s));
+        dest.setBounds((w - dw) / 2, (h - dh) / 2, dw, dh);
+    }
+
+    // Draws the image over a window of w x h with bars around it
+    void present(Graphics2D g, int w, int h) {
+        place(w, h);
+        Rectangle d = dest;
+        g.setColor(Color.BLACK);
+        if (d.y > 0) {
+            g.fillRect(0, 0, w, d.y);
+            g.fillRect(0, d.y + d.height, w, h - d.y - d.height);
+        }
+        if (d.x > 0) {
+            g.fillRect(0, d.y, d.x, d.height);
+            g.fillRect(d.x + d.width, d.y, w - d.x - d.width, d.height);
+        }
+        if (d.width == pixelsW && d.height == pixelsH) {
+            g.drawImage(image, d.x, d.y, null);
+        } else {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.drawImage(image, d.x, d.y, d.width, d.height, null);
+        }
+    }
+
+    // Marks the game area a window rectangle shows, rounded outwards
+    void toGame(Rectangle w, FrameDamage d) {
+        double kx = width / (double) dest.width, ky = height / (double) dest.height;
+        int x0 = (int) Math.floor((w.x - dest.x) * kx), y0 = (int) Math.floor((w.y - dest.y) * ky);
+        d.add(x0, y0, (int) Math.ceil((w.x + w.width - dest.x) * kx) - x0,
+                (int) Math.ceil((w.y + w.height - dest.y) * ky) - y0);
+    }
+
+    // The window area showing the game rectangle a, rounded outwards
+    Rectangle toWindow(Rectangle a) {
+        double kx = dest.width / (double) width, ky = dest.height / (double) height;
+        int x0 = dest.x + (int) Math.floor(a.x * kx), y0 = dest.y + (int) Math.floor(a.y * ky);
+        return new Rectangle(x0, y0, dest.x + (int) Math.ceil((a.x + a.width) * kx) - x0,
+                dest.y + (int) Math.ceil((a.y + a.height) * ky) - y0);
+    }
+}
@@ -0,0 +1,143 @@
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+// Dedicated game-loop thread: fixed-timestep simulation with active rendering
+// into a BufferStrategy. Frames are interpolated between the last two ticks.
+// Frames are drawn into the game's Framebuffer, so only the part that changed
+// is redrawn before it is scaled to the canvas; a frame where nothing changed
+// is not drawn or shown at all, and the loop sleeps until the next tick instead.
+public class GameLoop implements Runnable {
+    final GamePanel game;
+    // The system's repaint requests (e.g. once the window is uncovered) only
+    // ask the loop for a full frame, since idle frames are not redrawn
+    final Canvas canvas = new Canvas() {
+        @Override public void update(Graphics g) { game.damage.everything = true; }
+        @Override public void paint(Graphics g) { game.damage.everything = true; }
+    };
+    int tickRate;
+    int frameRate; // 0 = uncapped
+    volatile boolean running = false;
+    Thread thread;
+    // Held while a frame is shown, and by GamePanel while it rebuilds the
+    // window (full screen), which replaces the canvas's buffers
+    final Object surface = new Object();
+
+    // Never simulate more than this much wall time in one go (e.g. after a stall)
+    long maxCatchUp = 250_000_000L;
+
+    public GameLoop(GamePanel game, int tickRate, int frameRate) {
+        this.game = game;
+        this.tickRate = tickRate;
+        this.frameRate = frameRate;
+        canvas.setFocusable(true);
+        canvas.setBackground(Color.BLACK); // as the bars around the frame
+        canvas.addKeyListener(game);
+    }
+
+    void start() {
+        canvas.createBufferStrategy(2);
+        canvas.requestFocusInWindow();
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        long step = 1_000_000_000L / tickRate;
+        long frameStep = frameRate > 0 ? 1_000_000_000L / frameRate : 0;
+        long prev = System.nanoTime();
+        long nextFrame = prev;
+        long acc = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            long elapsed = now - prev;
+            prev = now;
+            if (elapsed > maxCatchUp) elapsed = maxCatchUp;
+            acc += elapsed;
+
+            // Each tick takes the key events from its own slice of time
+            while (acc >= step) {
+                acc -= step;
+                game.tick(now - acc);
+            }
+
+            if (!game.frameDue(now) || !render((double) acc / step)) {
+                // Nothing new to show before the next tick
+                sleepNanos(step - acc);
+                nextFrame = System.nanoTime();
+                continue;
+            }
+
+            if (frameStep > 0) {
+                nextFrame += frameStep;
+                long wait = nextFrame - System.nanoTime();
+                if (wait > 0) sleepNanos(wait);
+                else nextFrame = System.nanoTime(); // fell behind, don't try to catch up frames
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    // Returns false if there was nothing new to draw
+    boolean render(double alpha) {
+        synchronized (surface) {
+            BufferStrategy bs = canvas.getBufferStrategy();
+            if (bs == null || !canvas.isDisplayable() || !game.plan(alpha)) return false;
+            return present(bs, alpha);
+        }
+    }
+
+    boolean present(BufferStrategy bs, double alpha) {
+        Framebuffer fb = game.framebuffer;
+        long start = System.nanoTime(), paint = 0;
+        boolean full = false;
+        do {
+            long t = System.nanoTime();
+            full |= fb.paint(game, canvas.getGraphicsConfiguration(), alpha);
+            paint += System.nanoTime() - t;
+            do {
+                Graphics2D g = (Graphics2D) bs.getDrawGraphics();
+                try {
+                    fb.present(g, canvas.getWidth(), canvas.getHeight());
+                } finally {
+                    g.dispose();
+                }
+            } while (bs.contentsRestored());
+            bs.show();
+        } while (bs.contentsLost() || fb.image.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        long end = System.nanoTime(), nanos = end - start;
+        game.presented(end);
+        // The tier only changes drawing; show() waits for vblank and the blit
+        // grows with the window, so timing those would read every frame as slow
+        if (full) game.quality.frameTime(paint); // partial frames would flatter it
+        // Whatever was not drawing is the hand-off to the screen
+        game.stats.record(FrameStats.PAINT, paint);
+        game.stats.record(FrameStats.PRESENT, nanos - paint);
+        game.stats.endFrame();
+        return true;
+    }
+
+    static void sleepNanos(long nanos) {
+        // Sleep coarsely, then spin the last millisecond for accurate pacing
+        long end = System.nanoTime() + nanos;
+        long coarse = nanos - 1_000_000L;
+        if (coarse > 0) {
+            try {
+                Thread.sleep(coarse / 1_000_000L, (int) (coarse % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        while (System.nanoTime() < end) Thread.onSpinWait();
+    }
+}
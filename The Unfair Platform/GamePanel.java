@@ -1,283 +1,447 @@
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.*;
-import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.io.File;
-import java.io.IOException;
-import java.util.Random;
-
-public class GamePanel extends JPanel implements ActionListener, KeyListener {
-    int WIDTH, HEIGHT;
-    javax.swing.Timer timer;
-    int FPS = 60;
-    int TILE = 32;
-    TileMap map;
-    Player player;
-    Camera cam;
-    boolean left, right, jumpPressed, jumpHeld;
-    int currentLevel = 1;
-    boolean showingIntro = true;
-    int introTimer = 0;
-    double fadeAlpha = 0.0;
-    int fadeState = 0;
-    int fadeFrames = FPS;
-    int fadeCounter = 0;
-    boolean playerDied = false;
-    int deathTimer = 0;
-    int deathDelay = 60; // 1 second death animation
-    
-    // Background images
-    BufferedImage[] backgroundImages = new BufferedImage[3];
-
-    public GamePanel(int w, int h) {
-        WIDTH = w;
-        HEIGHT = h;
-        setPreferredSize(new Dimension(WIDTH, HEIGHT));
-        setFocusable(true);
-        addKeyListener(this);
-
-        map = new TileMap(TILE);
-        player = new Player(64, 64, TILE - 6, TILE - 2);
-        
-        // Load background images
-        loadBackgroundImages();
-        
-        loadLevel(currentLevel);
-
-        cam = new Camera(0, 0, WIDTH, HEIGHT);
-        timer = new javax.swing.Timer(1000 / FPS, this);
-    }
-    
-    void loadBackgroundImages() {
-        try {
-            backgroundImages[0] = ImageIO.read(new File("level1.jpg"));
-            backgroundImages[1] = ImageIO.read(new File("level2.jpg"));
-            backgroundImages[2] = ImageIO.read(new File("level3.jpg"));
-        } catch (IOException e) {
-            System.out.println("Error loading background images: " + e.getMessage());
-            // If images fail to load, they will remain null and we'll use solid color backgrounds
-        }
-    }
-
-    void start() {
-        timer.start();
-    }
-
-    void loadLevel(int lvl) {
-        map.createLevel(lvl);
-        showingIntro = true;
-        introTimer = 0;
-
-        int groundLevel = (map.rows - 4) * map.tileSize - player.h;
-        player.reset(64, groundLevel);
-
-        fadeAlpha = 1.0;
-        fadeState = 2;
-        fadeCounter = 0;
-        playerDied = false;
-        deathTimer = 0;
-    }
-
-    void beginNextLevel() {
-        fadeState = 1;
-        fadeCounter = 0;
-    }
-
-    void doAdvanceLevel() {
-        currentLevel++;
-        if (currentLevel > 3) {
-            JOptionPane.showMessageDialog(this, "You Beat All Levels!");
-            currentLevel = 1;
-        }
-        loadLevel(currentLevel);
-    }
-
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (fadeState == 1) {
-            fadeCounter++;
-            fadeAlpha = Math.min(1.0, (double) fadeCounter / fadeFrames);
-            if (fadeCounter >= fadeFrames) {
-                doAdvanceLevel();
-                fadeState = 2;
-                fadeCounter = 0;
-            }
-            repaint();
-            return;
-        } else if (fadeState == 2) {
-            fadeCounter++;
-            fadeAlpha = 1.0 - Math.min(1.0, (double) fadeCounter / fadeFrames);
-            if (fadeCounter >= fadeFrames) {
-                fadeState = 0;
-                fadeAlpha = 0.0;
-            }
-        }
-
-        if (showingIntro) {
-            introTimer++;
-            if (introTimer > FPS * 2) showingIntro = false;
-            repaint();
-            return;
-        }
-
-        // Death animation sequence
-        if (playerDied) {
-            deathTimer++;
-            // Show falling animation for a moment before respawn
-            if (deathTimer >= deathDelay) {
-                playerDied = false;
-                deathTimer = 0;
-                map.resetTraps();
-                int groundLevel = (map.rows - 4) * map.tileSize - player.h;
-                player.reset(64, groundLevel);
-            } else {
-                // Continue physics during death animation so player falls
-                player.updatePhysicsDuringDeath(map);
-                cam.updateTarget(player);
-                cam.lerpToTarget(0.08);
-            }
-            repaint();
-            return;
-        }
-
-        double accel = 0.45;
-        double maxSpeed = 5.2;
-        double airControl = 0.5;
-
-        if (left && !right)
-            player.applyHorizontal(-accel, maxSpeed, jumpHeld ? 1.0 : airControl);
-        else if (right && !left)
-            player.applyHorizontal(accel, maxSpeed, jumpHeld ? 1.0 : airControl);
-        else player.applyFriction();
-
-        if (jumpPressed) {
-            player.tryJump();
-            jumpPressed = false;
-        }
-
-        player.setJumpHeld(jumpHeld);
-        player.updatePhysics(map);
-        map.update(player);
-        cam.updateTarget(player);
-        cam.lerpToTarget(0.08);
-
-        if (map.checkGoal(player)) beginNextLevel();
-        if (player.y > map.pixelHeight() + 200 || map.checkDeadlyHit(player)) {
-            playerDied = true;
-            deathTimer = 0;
-            player.startDeathAnimation();
-        }
-
-        repaint();
-    }
-
-    @Override
-    protected void paintComponent(Graphics g0) {
-        super.paintComponent(g0);
-        Graphics2D g = (Graphics2D) g0.create();
-
-        // Draw background image or fallback color
-        int bgIndex = currentLevel - 1;
-        if (backgroundImages[bgIndex] != null) {
-            // Draw background image, scaled to fit the screen
-            g.drawImage(backgroundImages[bgIndex], 0, 0, WIDTH, HEIGHT, null);
-            
-            // Add a semi-transparent dark overlay to dim the background
-            g.setColor(new Color(0, 0, 0, 80)); // 80/255 ≈ 31% darkness
-            g.fillRect(0, 0, WIDTH, HEIGHT);
-        } else {
-            // Fallback to solid color if image not loaded
-            Color bg;
-            switch (currentLevel) {
-                default -> bg = new Color(10, 28, 60);
-                case 2 -> bg = new Color(35, 12, 48);
-                case 3 -> bg = new Color(60, 12, 18);
-            }
-            g.setColor(bg);
-            g.fillRect(0, 0, WIDTH, HEIGHT);
-            drawPixelStars(g, currentLevel);
-        }
-
-        g.translate(-cam.x, -cam.y);
-        map.render(g);
-        
-        // Apply death effect to player
-        if (playerDied) {
-            float deathAlpha = 1.0f - ((float)deathTimer / deathDelay);
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, deathAlpha));
-            player.render(g);
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
-        } else {
-            player.render(g);
-        }
-        
-        g.translate(cam.x, cam.y);
-
-        if (showingIntro) drawIntro(g);
-        else {
-            g.setColor(Color.WHITE);
-            g.drawString("← → Move   |   Space Jump   |   R Reset", 12, 18);
-            g.drawString("Level " + currentLevel, WIDTH - 92, 18);
-        }
-
-        if (fadeState != 0 || fadeAlpha > 0) {
-            g.setColor(new Color(0, 0, 0, (int) (Math.min(1.0, fadeAlpha) * 255)));
-            g.fillRect(0, 0, WIDTH, HEIGHT);
-        }
-
-        g.dispose();
-    }
-
-    void drawPixelStars(Graphics2D g, int lvl) {
-        g.setColor(new Color(255, 255, 255, 30));
-        Random r = new Random(lvl * 99991L);
-        for (int i = 0; i < 40; i++)
-            g.fillRect(r.nextInt(WIDTH), r.nextInt(HEIGHT), 1, 1);
-    }
-
-    void drawIntro(Graphics2D g) {
-        g.setColor(new Color(0, 0, 0, 200));
-        g.fillRect(0, 0, WIDTH, HEIGHT);
-        g.setColor(Color.WHITE);
-        g.setFont(new Font("SansSerif", Font.BOLD, 30));
-
-        String title = "", desc = "";
-        switch (currentLevel) {
-            case 1 -> { title = "🧱 Level 1 – The Tutorial Trap"; desc = "Watch for popping spike traps!"; }
-            case 2 -> { title = "🌪️ Level 2 – The False Floor"; desc = "Some tiles vanish when stepped on. Spikes await below."; }
-            case 3 -> { title = "🔥 Level 3 – The Cruel Machine"; desc = "Timing is everything. Watch for fake platforms and deadly gaps."; }
-        }
-
-        int y = HEIGHT / 3;
-        drawCentered(g, title, y);
-        g.setFont(new Font("SansSerif", Font.PLAIN, 18));
-        drawCentered(g, desc, y + 44);
-    }
-
-    void drawCentered(Graphics2D g, String text, int y) {
-        int x = (WIDTH - g.getFontMetrics().stringWidth(text)) / 2;
-        g.drawString(text, x, y);
-    }
-
-    @Override public void keyTyped(KeyEvent e) {}
-    @Override public void keyPressed(KeyEvent e) {
-        int kc = e.getKeyCode();
-        if (kc == KeyEvent.VK_LEFT) left = true;
-        if (kc == KeyEvent.VK_RIGHT) right = true;
-        if (kc == KeyEvent.VK_SPACE) { jumpPressed = true; jumpHeld = true; }
-        if (kc == KeyEvent.VK_R) {
-            map.resetTraps();
-            int groundLevel = (map.rows - 4) * map.tileSize - player.h;
-            player.reset(64, groundLevel);
-            playerDied = false;
-            deathTimer = 0;
-        }
-    }
-    @Override public void keyReleased(KeyEvent e) {
-        int kc = e.getKeyCode();
-        if (kc == KeyEvent.VK_LEFT) left = false;
-        if (kc == KeyEvent.VK_RIGHT) right = false;
-        if (kc == KeyEvent.VK_SPACE) jumpHeld = false;
-    }
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public class GamePanel extends JPanel implements ActionListener, KeyListener {
+    int WIDTH, HEIGHT;
+    javax.swing.Timer timer;
+    GameLoop loop;
+    static final int FPS = World.TICK_RATE;
+    static final int OVERLAY_X = 12, OVERLAY_Y = 28;
+    World world;
+    Viewport view = new Viewport(0, 0, 0, 0);
+    PlayerSprites sprites = new PlayerSprites();
+    // Key events reach the loop through a timestamped queue; each is applied
+    // at the point of the tick it happened in (World.step's phase bits)
+    InputQueue input = new InputQueue();
+    int keys = 0;          // held keys as World input bits; loop thread only
+    long tickEnd = 0;      // end of the last tick's window of time
+    long pendingInput = 0; // time of the oldest input not yet presented, or 0
+    
+    // Background images, filled in by the asset loader
+    Assets.Handle[] backgroundImages = new Assets.Handle[3];
+    BackgroundLayer[] backgrounds = {new BackgroundLayer(), new BackgroundLayer(), new BackgroundLayer()};
+    QualityGovernor quality;
+    // Phase timings; F3 shows them, -Dtup.stats=<file> saves them on exit
+    FrameStats stats = new FrameStats();
+    File statsFile;
+    // Only what changed is redrawn; nothing at all while iconified, and at
+    // most -Dtup.backgroundFps frames a second while another window has focus
+    FrameDamage damage;
+    volatile boolean focused = true, iconified = false;
+    long backgroundStep = 1_000_000_000L / Math.max(1, Integer.getInteger("tup.backgroundFps", 10));
+    long lastDrawn = 0;
+    // Frames are drawn at the game's resolution (or -Dtup.renderScale) and
+    // scaled to the window; F11 or -Dtup.fullscreen switches to full screen
+    Framebuffer framebuffer;
+    Rectangle windowBounds; // of the window before it went full screen
+
+    // -Dtup.record=<file> saves the session's inputs on exit; -Dtup.replay=<file> plays one back
+    InputLog recording;
+    File recordingFile;
+    Replay replay;
+
+    public GamePanel(int w, int h) {
+        WIDTH = w;
+        HEIGHT = h;
+        damage = new FrameDamage(w, h);
+        framebuffer = Framebuffer.fromProperties(w, h);
+        setPreferredSize(new Dimension(WIDTH, HEIGHT));
+        setFocusable(true);
+        addKeyListener(this);
+
+        loadReplay();
+        if (replay != null) world = replay.world;
+        else world = new World(WIDTH, HEIGHT);
+        world.stats = stats;
+        startRecording();
+        startStats();
+        
+        // Start loading images; frames draw placeholders until they arrive
+        loadBackgroundImages();
+        sprites.loadImages();
+
+        int fps = Integer.getInteger("tup.fps", 0);
+        quality = QualityGovernor.fromProperty(fps > 0 ? fps : FPS);
+        if ("timer".equals(System.getProperty("tup.loop"))) {
+            timer = new javax.swing.Timer(1000 / FPS, this);
+        } else {
+            // Active rendering: the canvas covers the panel and receives the keys
+            loop = new GameLoop(this, FPS, fps);
+            setLayout(new BorderLayout());
+            setIgnoreRepaint(true);
+            add(loop.canvas, BorderLayout.CENTER);
+        }
+    }
+    
+    void loadBackgroundImages() {
+        // Until an image is ready (or if it fails) we use solid color backgrounds
+        for (int i = 0; i < backgroundImages.length; i++) {
+            BackgroundLayer layer = backgrounds[i];
+            backgroundImages[i] = Assets.load("level" + (i + 1) + ".jpg", img -> layer.prepare(img, WIDTH, HEIGHT));
+        }
+    }
+
+    void loadReplay() {
+        String path = System.getProperty("tup.replay");
+        if (path == null) return;
+        try {
+            InputLog log = InputLog.load(new File(path));
+            replay = new Replay(log, WIDTH, HEIGHT);
+        } catch (IOException e) {
+            System.out.println("Error loading replay: " + e.getMessage());
+        }
+    }
+
+    void startRecording() {
+        String path = System.getProperty("tup.record");
+        if (path == null) return;
+        recording = new InputLog(World.TICK_RATE);
+        recordingFile = new File(path);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveRecording));
+    }
+
+    void saveRecording() {
+        synchronized (recording) {
+            try {
+                recording.save(recordingFile);
+                System.out.println("Saved " + recording.length() + " ticks to " + recordingFile);
+            } catch (IOException e) {
+                System.out.println("Error saving recording: " + e.getMessage());
+            }
+        }
+    }
+
+    void startStats() {
+        String path = System.getProperty("tup.stats");
+        if (path == null) return;
+        statsFile = new File(path);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stats.dump(statsFile)));
+    }
+
+    void start() {
+        watchWindow();
+        if (Boolean.getBoolean("tup.fullscreen")) toggleFullScreen();
+        if (loop != null) loop.start();
+        else timer.start();
+    }
+
+    void watchWindow() {
+        Window w = SwingUtilities.getWindowAncestor(this);
+        if (w == null) return;
+        WindowAdapter watcher = new WindowAdapter() {
+            @Override public void windowIconified(WindowEvent e) { iconified = true; }
+            @Override public void windowDeiconified(WindowEvent e) { iconified = false; }
+            @Override public void windowGainedFocus(WindowEvent e) { focused = true; }
+            @Override public void windowLostFocus(WindowEvent e) {
+                focused = false;
+                // The key releases will go to another window
+                input.offer(World.HELD, System.nanoTime());
+            }
+        };
+        w.addWindowListener(watcher);
+        w.addWindowFocusListener(watcher);
+    }
+
+    // Whether a frame may be drawn now, given the window's state
+    boolean frameDue(long now) {
+        if (iconified || !focused && now - lastDrawn < backgroundStep) {
+            stats.throttledFrames++;
+            return false;
+        }
+        return true;
+    }
+
+    // Works out what the next frame has to redraw, into damage.area; false if
+    // the last frame drawn still shows exactly what this one would
+    boolean plan(double alpha) {
+        FrameDamage d = damage;
+        d.camX = camX(alpha);
+        d.camY = camY(alpha);
+        int bgIndex = world.currentLevel - 1;
+        boolean background = quality.backgroundImage() && backgroundImages[bgIndex].image != null;
+        if (d.everything || d.camX != d.drawnCamX || d.camY != d.drawnCamY
+                || world.currentLevel != d.drawnLevel || quality.tier != d.drawnTier
+                || world.showingIntro != d.drawnIntro || world.fadeAlpha != d.drawnFade
+                || background != d.drawnBackground || stats.overlay != d.drawnOverlay) {
+            d.everything = false;
+            d.all();
+            return true;
+        }
+        d.clear();
+        Player p = world.player;
+        // The death effect fades the player every tick
+        if (sprites.changed(p, alpha, world.ticks) || world.playerDied && quality.composites()) {
+            d.addWorld(sprites.drawnX, sprites.drawnY, p.w, p.h);
+            d.addWorld(PlayerSprites.x(p, alpha), PlayerSprites.y(p, alpha), p.w, p.h);
+        }
+        view.set(d.camX, d.camY, world.cam.w, world.cam.h);
+        world.map.damage(view, d);
+        if (stats.overlay) d.add(OVERLAY_X, OVERLAY_Y, FrameStats.OVERLAY_W, FrameStats.OVERLAY_H);
+        if (d.area.isEmpty()) {
+            stats.skippedFrames++;
+            return false;
+        }
+        return true;
+    }
+
+    void showMessage(String msg) {
+        if (GraphicsEnvironment.isHeadless()) {
+            System.out.println(msg); // e.g. the playthrough benchmark
+            return;
+        }
+        if (SwingUtilities.isEventDispatchThread()) {
+            JOptionPane.showMessageDialog(this, msg);
+            return;
+        }
+        // Called from the game-loop thread: block it until the dialog is closed
+        try {
+            SwingUtilities.invokeAndWait(() -> JOptionPane.showMessageDialog(this, msg));
+        } catch (Exception e) {
+            System.out.println("Error showing message: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        tick();
+        if (frameDue(System.nanoTime()) && plan(1.0)) {
+            framebuffer.place(getWidth(), getHeight());
+            repaint(framebuffer.toWindow(damage.area));
+        }
+    }
+
+    void tick() {
+        tick(System.nanoTime());
+    }
+
+    // Applies the key events up to end and advances the world one step
+    void tick(long end) {
+        stats.tick();
+        long t = System.nanoTime();
+        int mask = sampleInput(end);
+        stats.lap(FrameStats.INPUT, t);
+        if (replay != null && !replay.finished()) {
+            replay.step();
+        } else {
+            world.step(mask);
+            if (recording != null) {
+                synchronized (recording) {
+                    recording.append(mask);
+                }
+            }
+        }
+        if (world.gameCompleted) showMessage("You Beat All Levels!");
+    }
+
+    // Drains the events before end into the held keys and returns the tick's
+    // input mask. The tick covers the time since the last one ended; the first
+    // event that changed the input sets the phase, in eighths of the tick, from
+    // which World.step applies it. Events from before the window count from 0.
+    int sampleInput(long end) {
+        long start = tickEnd != 0 ? tickEnd : end - 1_000_000_000L / FPS;
+        tickEnd = end;
+        int before = keys, pressed = 0;
+        long first = Long.MAX_VALUE, when;
+        while ((when = input.peekTime()) < end) {
+            int e = input.poll();
+            int bits = e & ~InputQueue.DOWN;
+            if ((e & InputQueue.DOWN) != 0) {
+                keys |= bits & World.HELD;
+                pressed |= bits & ~World.HELD;
+            } else {
+                keys &= ~bits;
+            }
+            if (first == Long.MAX_VALUE && (keys != before || pressed != 0)) first = when;
+            if (pendingInput == 0) pendingInput = when;
+        }
+        int mask = keys | pressed;
+        if (first != Long.MAX_VALUE && first > start && end > start) {
+            long phase = Math.min(World.PHASES - 1, (first - start) * World.PHASES / (end - start));
+            mask |= (int) phase << World.PHASE_SHIFT;
+        }
+        return mask;
+    }
+
+    // A frame showing the queued inputs is on screen now
+    void presented(long now) {
+        if (pendingInput == 0) return;
+        stats.inputLatency(now - pendingInput);
+        pendingInput = 0;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        // With the game loop the canvas covers the panel and the loop thread
+        // owns the frame; painting here on the EDT would race it
+        if (loop != null) return;
+        // Timer mode: redraw the part of the frame Swing asks for, what
+        // plan() found changed merged with anything uncovered
+        Rectangle clip = g0.getClipBounds();
+        framebuffer.place(getWidth(), getHeight());
+        damage.clear();
+        if (clip == null) damage.all();
+        else framebuffer.toGame(clip, damage);
+        long start = System.nanoTime();
+        boolean full = framebuffer.paint(this, getGraphicsConfiguration(), 1.0);
+        if (full) quality.frameTime(System.nanoTime() - start); // partial frames would flatter it
+        long t = stats.lap(FrameStats.PAINT, start);
+        Graphics2D g = (Graphics2D) g0.create();
+        framebuffer.present(g, getWidth(), getHeight());
+        g.dispose();
+        presented(stats.lap(FrameStats.PRESENT, t));
+        stats.endFrame();
+    }
+
+    // F11: exclusive full screen on the window's screen, or back to the window
+    void toggleFullScreen() {
+        if (!(SwingUtilities.getWindowAncestor(this) instanceof Frame f)) return;
+        GraphicsDevice device = f.getGraphicsConfiguration().getDevice();
+        boolean full = device.getFullScreenWindow() != f;
+        // Decorations can only change while the window is not displayable, and
+        // that takes the canvas's buffers with it, so the loop must not draw
+        synchronized (loop != null ? loop.surface : this) {
+            if (full) windowBounds = f.getBounds();
+            f.dispose();
+            f.setUndecorated(full);
+            device.setFullScreenWindow(full ? f : null);
+            if (!full) f.setBounds(windowBounds);
+            f.setVisible(true);
+            if (loop != null) loop.canvas.createBufferStrategy(2);
+        }
+        damage.everything = true;
+        (loop != null ? loop.canvas : this).requestFocusInWindow();
+    }
+
+    // Draws one frame, or the part of it inside g's clip; alpha interpolates
+    // between the previous and current tick. Returns whether it was a full frame.
+    boolean render(Graphics2D g, double alpha) {
+        Rectangle clip = g.getClipBounds();
+        boolean full = clip == null || clip.contains(0, 0, WIDTH, HEIGHT);
+        if (full) stats.fullFrames++;
+        else stats.partialFrames++;
+
+        // Draw background image or fallback color
+        int bgIndex = world.currentLevel - 1;
+        // Background image pre-scaled to the screen with the dim overlay baked in
+        boolean drawn = quality.backgroundImage()
+                && backgrounds[bgIndex].draw(g, backgroundImages[bgIndex].image, WIDTH, HEIGHT);
+        if (!drawn) {
+            // Fallback to solid color if image not loaded
+            Color bg;
+            switch (world.currentLevel) {
+                default -> bg = new Color(10, 28, 60);
+                case 2 -> bg = new Color(35, 12, 48);
+                case 3 -> bg = new Color(60, 12, 18);
+            }
+            g.setColor(bg);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            drawPixelStars(g, world.currentLevel);
+        }
+
+        double camX = camX(alpha), camY = camY(alpha);
+        g.translate(-camX, -camY);
+        view.set(camX, camY, world.cam.w, world.cam.h);
+        world.map.blendFades = quality.composites();
+        world.map.render(g, view);
+        stats.culled(view);
+        
+        // Apply death effect to player
+        if (world.playerDied && quality.composites()) {
+            float deathAlpha = 1.0f - ((float)world.deathTimer / world.deathDelay);
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, deathAlpha));
+            sprites.render(g, world.player, alpha, world.ticks);
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
+        } else {
+            sprites.render(g, world.player, alpha, world.ticks);
+        }
+        
+        g.translate(camX, camY);
+
+        if (world.showingIntro) drawIntro(g);
+        else {
+            g.setColor(Color.WHITE);
+            g.drawString("← → Move   |   Space Jump   |   R Reset", 12, 18);
+            g.drawString("Level " + world.currentLevel, WIDTH - 92, 18);
+        }
+
+        if (world.fadeState != 0 || world.fadeAlpha > 0) {
+            g.setColor(new Color(0, 0, 0, (int) (Math.min(1.0, world.fadeAlpha) * 255)));
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+        }
+
+        boolean overlay = stats.overlay; // F3 may flip it meanwhile; plan() sees that next frame
+        if (overlay) stats.render(g, OVERLAY_X, OVERLAY_Y);
+
+        FrameDamage d = damage;
+        d.drawnCamX = camX;
+        d.drawnCamY = camY;
+        d.drawnLevel = world.currentLevel;
+        d.drawnTier = quality.tier;
+        d.drawnIntro = world.showingIntro;
+        d.drawnFade = world.fadeAlpha;
+        d.drawnBackground = drawn;
+        d.drawnOverlay = overlay;
+        lastDrawn = System.nanoTime();
+        return full;
+    }
+
+    // The interpolated camera on whole pixels, so it settles as it eases in
+    // instead of moving by invisible fractions that would redraw every frame
+    double camX(double alpha) { return Math.round(world.cam.prevX + (world.cam.x - world.cam.prevX) * alpha); }
+    double camY(double alpha) { return Math.round(world.cam.prevY + (world.cam.y - world.cam.prevY) * alpha); }
+
+    void drawPixelStars(Graphics2D g, int lvl) {
+        g.setColor(new Color(255, 255, 255, 30));
+        Random r = new Random(lvl * 99991L);
+        int stars = quality.starCount();
+        for (int i = 0; i < stars; i++)
+            g.fillRect(r.nextInt(WIDTH), r.nextInt(HEIGHT), 1, 1);
+    }
+
+    void drawIntro(Graphics2D g) {
+        g.setColor(new Color(0, 0, 0, 200));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font("SansSerif", Font.BOLD, 30));
+
+        String title = "", desc = "";
+        switch (world.currentLevel) {
+            case 1 -> { title = "🧱 Level 1 – The Tutorial Trap"; desc = "Watch for popping spike traps!"; }
+            case 2 -> { title = "🌪️ Level 2 – The False Floor"; desc = "Some tiles vanish when stepped on. Spikes await below."; }
+            case 3 -> { title = "🔥 Level 3 – The Cruel Machine"; desc = "Timing is everything. Watch for fake platforms and deadly gaps."; }
+        }
+
+        int y = HEIGHT / 3;
+        drawCentered(g, title, y);
+        g.setFont(new Font("SansSerif", Font.PLAIN, 18));
+        drawCentered(g, desc, y + 44);
+    }
+
+    void drawCentered(Graphics2D g, String text, int y) {
+        int x = (WIDTH - g.getFontMetrics().stringWidth(text)) / 2;
+        g.drawString(text, x, y);
+    }
+
+    @Override public void keyTyped(KeyEvent e) {}
+    @Override public void keyPressed(KeyEvent e) {
+        int kc = e.getKeyCode(), bits = 0;
+        if (kc == KeyEvent.VK_LEFT) bits = World.LEFT;
+        if (kc == KeyEvent.VK_RIGHT) bits = World.RIGHT;
+        if (kc == KeyEvent.VK_SPACE) bits = World.JUMP_HELD | World.JUMP_PRESSED;
+        if (kc == KeyEvent.VK_R) bits = World.RESET;
+        if (bits != 0) input.offer(bits | InputQueue.DOWN, System.nanoTime());
+        if (kc == KeyEvent.VK_F3) stats.overlay = !stats.overlay;
+        if (kc == KeyEvent.VK_F11) toggleFullScreen();
+    }
+    @Override public void keyReleased(KeyEvent e) {
+        int kc = e.getKeyCode(), bits = 0;
+        if (kc == KeyEvent.VK_LEFT) bits = World.LEFT;
+        if (kc == KeyEvent.VK_RIGHT) bits = World.RIGHT;
+        if (kc == KeyEvent.VK_SPACE) bits = World.JUMP_HELD;
+        if (bits != 0) input.offer(bits, System.nanoTime());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+import java.io.*;
+import java.util.Arrays;
+
+// Per-tick World input masks, run-length encoded. Input changes a few times
+// a second at most, so a session costs a handful of bytes per second.
+//
+// File layout: "TUPI", version byte, tick rate (short), varint run count,
+// then runs of (varint mask, varint length). Version 1 files, read still,
+// had byte masks terminated by a 0xFF mask byte in place of the count; with
+// World's phase bits 0xFF is a real mask.
+public class InputLog {
+    static final int MAGIC = 0x54555049; // "TUPI"
+    static final int VERSION = 2;
+    static final int END = 0xFF; // version 1
+
+    int tickRate;
+    int[] masks = new int[64];
+    int[] lengths = new int[64];
+    // ends[i] = total ticks up to and including run i, for seeking
+    long[] ends = new long[64];
+    int runCount = 0;
+
+    public InputLog(int tickRate) {
+        this.tickRate = tickRate;
+    }
+
+    void append(int mask) {
+        appendRun(mask, 1);
+    }
+
+    void appendRun(int mask, int len) {
+        if (runCount > 0 && masks[runCount - 1] == mask) {
+            lengths[runCount - 1] += len;
+            ends[runCount - 1] += len;
+            return;
+        }
+        if (runCount == masks.length) {
+            masks = Arrays.copyOf(masks, runCount * 2);
+            lengths = Arrays.copyOf(lengths, runCount * 2);
+            ends = Arrays.copyOf(ends, runCount * 2);
+        }
+        masks[runCount] = mask;
+        lengths[runCount] = len;
+        ends[runCount] = length() + len;
+        runCount++;
+    }
+
+    long length() {
+        return runCount == 0 ? 0 : ends[runCount - 1];
+    }
+
+    // Input for the given tick (0-based)
+    int maskAt(long tick) {
+        int i = Arrays.binarySearch(ends, 0, runCount, tick + 1);
+        if (i < 0) i = -i - 1;
+        return masks[i];
+    }
+
+    void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(tickRate);
+        writeVarInt(out, runCount);
+        for (int i = 0; i < runCount; i++) {
+            writeVarInt(out, masks[i]);
+            writeVarInt(out, lengths[i]);
+        }
+        out.flush();
+    }
+
+    void save(File f) throws IOException {
+        try (OutputStream os = new FileOutputStream(f)) {
+            write(os);
+        }
+    }
+
+    static InputLog read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC) throw new IOException("Not an input recording");
+        int version = in.readUnsignedByte();
+        if (version != 1 && version != VERSION) throw new IOException("Unsupported recording version " + version);
+        InputLog log = new InputLog(in.readUnsignedShort());
+        if (log.tickRate != World.TICK_RATE)
+            throw new IOException("Recorded at " + log.tickRate + " ticks a second, not " + World.TICK_RATE);
+        if (version == 1) {
+            int mask;
+            while ((mask = in.readUnsignedByte()) != END) {
+                log.appendRun(mask, readVarInt(in));
+            }
+            return log;
+        }
+        for (int n = readVarInt(in); n > 0; n--) {
+            log.appendRun(readVarInt(in), readVarInt(in));
+        }
+        return log;
+    }
+
+    static InputLog load(File f) throws IOException {
+        try (InputStream is = new FileInputStream(f)) {
+            return read(is);
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Key events on their way from the event thread to the game loop, each with
+// the System.nanoTime() it happened at, so the loop can put it in the tick
+// (and the part of the tick) it belongs to. A single-producer,
+// single-consumer ring: offer() and poll() never block or take a lock, and
+// the head and tail counters are the only shared writes, each owned by one
+// side and published with a release store.
+public class InputQueue {
+    static final int CAPACITY = 1024; // a power of two
+    static final int MASK = CAPACITY - 1;
+    static final int DOWN = 1 << 16; // else the keys went up
+
+    final long[] times = new long[CAPACITY];
+    final int[] events = new int[CAPACITY];
+    final AtomicLong head = new AtomicLong(); // next to read; consumer only
+    final AtomicLong tail = new AtomicLong(); // next to write; producer only
+    int dropped = 0; // producer only
+
+    // Event: World input bits, plus DOWN for a press. False if the queue is full.
+    boolean offer(int event, long when) {
+        long t = tail.get();
+        if (t - head.get() == CAPACITY) {
+            dropped++;
+            return false;
+        }
+        int i = (int) t & MASK;
+        times[i] = when;
+        events[i] = event;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Time of the oldest event, or Long.MAX_VALUE if there is none
+    long peekTime() {
+        long h = head.get();
+        return h == tail.get() ? Long.MAX_VALUE : times[(int) h & MASK];
+    }
+
+    // Removes the oldest event; only after peekTime() found one
+    int poll() {
+        long h = head.get();
+        int e = events[(int) h & MASK];
+        head.lazySet(h + 1);
+        return e;
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// One level's tiles, traps, spawn point and goals, ready to play. Built from a
+// level file next to the other assets when there is one, else from the
+// built-in layouts below. Building needs nothing from the running map, so the
+// next level can be prepared on a background thread and handed to
+// TileMap.install() in one step.
+public class Level {
+    static final String DIR = System.getProperty("tup.levels", ".");
+
+    // Daemon so a pending prefetch never holds the JVM open
+    static final ExecutorService PREFETCH = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "level-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    int number;
+    int cols, rows;
+    ChunkedTiles tiles;
+    LevelFile file; // null for a built-in level
+    int spawnCol, spawnRow;
+    Spikes spikes;
+    FakeTiles fakeTiles;
+    Enemies enemies;
+    int[] goalRegions;
+
+    static String fileName(int lvl) {
+        return "level" + lvl + ".tupl";
+    }
+
+    // streamW/streamH: area around the spawn point to have loaded on return
+    static Level open(int lvl, int tileSize, int streamW, int streamH) {
+        File f = new File(DIR, fileName(lvl));
+        if (f.isFile()) {
+            try {
+                return load(lvl, new LevelFile(f), tileSize, streamW, streamH);
+            } catch (IOException e) {
+                System.out.println("Error loading level file " + f + ": " + e.getMessage());
+            }
+        }
+        return build(lvl, tileSize);
+    }
+
+    static Future<Level> prefetch(int lvl, int tileSize, int streamW, int streamH) {
+        return PREFETCH.submit(() -> open(lvl, tileSize, streamW, streamH));
+    }
+
+    static Level load(int lvl, LevelFile f, int tileSize, int streamW, int streamH) throws IOException {
+        if (f.tileSize != 0 && f.tileSize != tileSize)
+            throw new IOException("Level was saved for tile size " + f.tileSize + ", not " + tileSize);
+        Level l = new Level();
+        l.number = lvl;
+        l.file = f;
+        l.cols = f.cols;
+        l.rows = f.rows;
+        l.spawnCol = f.spawnCol;
+        l.spawnRow = f.spawnRow;
+        l.goalRegions = f.goalRegions.clone();
+        l.newTraps(tileSize);
+        for (int i = 0; i < f.spikes.length; i += 2)
+            l.spikes.add(f.spikes[i], f.spikes[i + 1]);
+        for (int i = 0; i < f.fakeTiles.length; i += 3)
+            l.fakeTiles.add(f.fakeTiles[i], f.fakeTiles[i + 1], f.fakeTiles[i + 2] != 0);
+        double[] e = f.enemies;
+        // Amplitude and speed are stored in pixels and radians per tick
+        for (int i = 0; i < e.length; i += 5)
+            l.enemies.add((int) e[i], (int) e[i + 1], e[i + 2], e[i + 3], e[i + 4] != 0);
+        // Page in the spawn area now, on whichever thread is building
+        l.tiles = new ChunkedTiles(l.cols, l.rows, f);
+        l.tiles.setStreamRadius(streamW, streamH, tileSize);
+        l.tiles.async = false;
+        l.tiles.stream(l.spawnRow, l.spawnCol);
+        l.tiles.async = true;
+        return l;
+    }
+
+    void newTraps(int tileSize) {
+        spikes = new Spikes(tileSize);
+        fakeTiles = new FakeTiles(tileSize);
+        enemies = new Enemies(tileSize);
+    }
+
+    static Level build(int lvl, int tileSize) {
+        Level l = new Level();
+        l.number = lvl;
+        int cols = l.cols = 60;
+        int rows = l.rows = 36;
+        ChunkedTiles tiles = l.tiles = new ChunkedTiles(cols, rows);
+        l.newTraps(tileSize);
+        Spikes spikes = l.spikes;
+        FakeTiles fakeTiles = l.fakeTiles;
+        l.spawnCol = 2;
+        l.spawnRow = rows - 4;
+
+        // Level 1 - No fake tiles
+        if (lvl == 1) {
+            for (int c = 0; c < 28; c++) tiles.set(rows - 4, c, 1);
+            tiles.set(rows - 7, 15, 1);
+            spikes.add(8, rows - 4);
+            spikes.add(9, rows - 4);
+            spikes.add(18, rows - 4);
+            spikes.add(19, rows - 4);
+            spikes.add(25, rows - 4);
+            tiles.set(rows - 4, 28, 2);
+            tiles.set(rows - 4, 29, 2);
+        }
+
+        // Level 2 - Fake tiles without animation (immediate disappearance)
+        if (lvl == 2) {
+            for (int c = 0; c < 35; c++)
+                if (c % 5 != 0) tiles.set(rows - 4, c, 1);
+            spikes.add(6, rows - 4);
+            spikes.add(7, rows - 4);
+            spikes.add(11, rows - 4);
+            spikes.add(12, rows - 4);
+            spikes.add(16, rows - 4);
+            spikes.add(17, rows - 4);
+            spikes.add(26, rows - 4);
+            spikes.add(27, rows - 4);
+            spikes.add(31, rows - 4);
+            spikes.add(32, rows - 4);
+
+            // Level 2 fake tiles - immediate disappearance
+            fakeTiles.add(8, rows - 4, false);
+            fakeTiles.add(9, rows - 4, false);
+            fakeTiles.add(18, rows - 4, false);
+            fakeTiles.add(19, rows - 4, false);
+            fakeTiles.add(28, rows - 4, false);
+            fakeTiles.add(29, rows - 4, false);
+
+            tiles.set(rows - 6, 13, 1);
+            tiles.set(rows - 8, 23, 1);
+            tiles.set(rows - 6, 33, 1);
+            tiles.set(rows - 4, 35, 2);
+            tiles.set(rows - 4, 36, 2);
+            tiles.set(rows - 4, 37, 2);
+        }
+
+        // Level 3 - Fake tiles WITH animation
+        if (lvl == 3) {
+            for (int c = 0; c < 50; c++)
+                if (c % 4 != 0) tiles.set(rows - 4, c, 1);
+
+            int[] spikeCols = {5,6,9,10,13,14,17,18,21,22,25,26,29,30,33,34,37,38,41,42};
+            for (int sc : spikeCols) spikes.add(sc, rows - 4);
+
+            // Level 3 fake tiles - WITH fade animation
+            for(int c=7;c<10;c++) fakeTiles.add(c, rows-4, true);
+            for(int c=15;c<18;c++) fakeTiles.add(c, rows-4, true);
+            for(int c=23;c<26;c++) fakeTiles.add(c, rows-4, true);
+            for(int c=31;c<34;c++) fakeTiles.add(c, rows-4, true);
+            for(int c=39;c<42;c++) fakeTiles.add(c, rows-4, true);
+
+            tiles.set(rows-4, 50, 2);
+            tiles.set(rows-4, 51, 2);
+            tiles.set(rows-4, 52, 2);
+            tiles.set(rows-4, 53, 2);
+        }
+
+        l.goalRegions = TileMap.findGoalRegions(cols, rows, tileSize, tiles::get);
+        return l;
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// A level on disk, memory-mapped. The header and trap tables are decoded up
+// front; tile chunks are copied out of the mapping one at a time as the map
+// streams them. A mapping cannot be unmapped explicitly, so there is nothing
+// to close: it goes with this object, once no level or load still uses it.
+//
+// Layout (big-endian): "TUPL", version int, cols, rows, chunk size,
+// spawn col, spawn row, goal region count, then x, y, w, h (pixels at
+// the map's tile size) per goal region. Version 2 follows with the tile size,
+// spike count and (col, row) per spike, fake tile count and (col, row,
+// animated byte) per fake tile, enemy count and (col, row, amplitude px
+// double, speed per tick double, horizontal byte) per enemy. Then one
+// chunk-size^2 byte payload per chunk in row-major chunk order.
+public class LevelFile {
+    static final int MAGIC = 0x5455504C; // "TUPL"
+    static final int VERSION = 2;
+
+    // Supplies tile ids when writing a level file
+    interface TileSource {
+        int tileAt(int r, int c);
+    }
+
+    MappedByteBuffer data;
+    int version;
+    int cols, rows, chunkSize;
+    int spawnCol, spawnRow;
+    int[] goalRegions;
+    int tileSize; // 0 for version 1 files, which predate the field
+    int[] spikes = new int[0];   // col, row
+    int[] fakeTiles = new int[0]; // col, row, animated
+    double[] enemies = new double[0]; // col, row, amplitude, speed, horizontal
+    int dataOffset;
+
+    LevelFile(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            ByteBuffer in = data.duplicate();
+            if (in.getInt() != MAGIC) throw new IOException("Not a level file: " + f);
+            version = in.getInt();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported level file version " + version);
+            cols = in.getInt();
+            rows = in.getInt();
+            chunkSize = in.getInt();
+            if (chunkSize != ChunkedTiles.SIZE) throw new IOException("Unsupported chunk size " + chunkSize);
+            spawnCol = in.getInt();
+            spawnRow = in.getInt();
+            goalRegions = new int[in.getInt() * 4];
+            for (int i = 0; i < goalRegions.length; i++) goalRegions[i] = in.getInt();
+            if (version >= 2) readTraps(in);
+            dataOffset = in.position();
+            if (cols <= 0 || rows <= 0) throw new IOException("Bad level size " + cols + "x" + rows);
+            long chunks = (long) ((cols + chunkSize - 1) / chunkSize) * ((rows + chunkSize - 1) / chunkSize);
+            // Every chunk must be there: a short read mid-level could not be recovered
+            if (dataOffset + chunks * chunkSize * chunkSize > data.limit()) throw new EOFException("Truncated level file: " + f);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated level file: " + f);
+        }
+    }
+
+    void readTraps(ByteBuffer in) {
+        tileSize = in.getInt();
+        spikes = new int[in.getInt() * 2];
+        for (int i = 0; i < spikes.length; i++) spikes[i] = in.getInt();
+        fakeTiles = new int[in.getInt() * 3];
+        for (int i = 0; i < fakeTiles.length; i += 3) {
+            fakeTiles[i] = in.getInt();
+            fakeTiles[i + 1] = in.getInt();
+            fakeTiles[i + 2] = in.get();
+        }
+        enemies = new double[in.getInt() * 5];
+        for (int i = 0; i < enemies.length; i += 5) {
+            enemies[i] = in.getInt();
+            enemies[i + 1] = in.getInt();
+            enemies[i + 2] = in.getDouble();
+            enemies[i + 3] = in.getDouble();
+            enemies[i + 4] = in.get();
+        }
+    }
+
+    // Copies one chunk out of the mapping; safe to call from the loader thread
+    void readChunk(int cx, int cy, byte[] dst) throws IOException {
+        int chunkCols = (cols + chunkSize - 1) / chunkSize;
+        long pos = dataOffset + ((long) cy * chunkCols + cx) * dst.length;
+        if (pos + dst.length > data.limit()) throw new EOFException("Truncated level file");
+        data.get((int) pos, dst);
+    }
+
+    static void write(File f, Level l, int tileSize) throws IOException {
+        write(f, l.cols, l.rows, tileSize, l.spawnCol, l.spawnRow, l.tiles::get, l.spikes, l.fakeTiles, l.enemies);
+    }
+
+    static void write(File f, int cols, int rows, int tileSize, int spawnCol, int spawnRow, TileSource tiles,
+                      Spikes spikes, FakeTiles fakeTiles, Enemies enemies) throws IOException {
+        int size = ChunkedTiles.SIZE;
+        int[] regions = TileMap.findGoalRegions(cols, rows, tileSize, tiles);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cols);
+            out.writeInt(rows);
+            out.writeInt(size);
+            out.writeInt(spawnCol);
+            out.writeInt(spawnRow);
+            out.writeInt(regions.length / 4);
+            for (int v : regions) out.writeInt(v);
+            out.writeInt(tileSize);
+            out.writeInt(spikes.count);
+            for (int i = 0; i < spikes.count; i++) {
+                out.writeInt(spikes.col[i]);
+                out.writeInt(spikes.row[i]);
+            }
+            out.writeInt(fakeTiles.count);
+            for (int i = 0; i < fakeTiles.count; i++) {
+                out.writeInt(fakeTiles.col[i]);
+                out.writeInt(fakeTiles.row[i]);
+                out.writeByte(fakeTiles.animated[i] ? 1 : 0);
+            }
+            out.writeInt(enemies.count);
+            for (int i = 0; i < enemies.count; i++) {
+                out.writeInt(enemies.col[i]);
+                out.writeInt(enemies.row[i]);
+                out.writeDouble(enemies.amp[i]);
+                out.writeDouble(enemies.spd[i]);
+                out.writeByte(enemies.horiz[i] ? 1 : 0);
+            }
+            int chunkCols = (cols + size - 1) / size, chunkRows = (rows + size - 1) / size;
+            for (int cy = 0; cy < chunkRows; cy++)
+                for (int cx = 0; cx < chunkCols; cx++)
+                    for (int r = cy * size; r < (cy + 1) * size; r++)
+                        for (int c = cx * size; c < (cx + 1) * size; c++)
+                            out.writeByte(r < rows && c < cols ? tiles.tileAt(r, c) : 0);
+        }
+    }
+
+    // Exports the built-in levels as level1.tupl ... into the given folder
+    public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : ".");
+        for (int lvl = 1; lvl <= World.LEVEL_COUNT; lvl++) {
+            File f = new File(dir, Level.fileName(lvl));
+            write(f, Level.build(lvl, World.TILE), World.TILE);
+            System.out.println("Wrote " + f);
+        }
+    }
+}
@@ -1,183 +1,206 @@
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
-import java.io.File;
-import java.io.IOException;
-
-public class Player {
-    double x, y, dx, dy;
-    int w, h;
-    boolean onGround;
-    double gravity = 0.55;
-    double maxFall = 12;
-    double jumpVel = -10.2;
-    int coyote = 0;
-    boolean jumpHeld = false;
-    boolean isDying = false;
-
-    // Animation
-    BufferedImage idleImg, runRightImg, runLeftImg, jumpImg;
-    int frameCounter = 0;
-    int animSpeed = 10; // lower = faster animation
-    boolean movingLeft = false, movingRight = false, jumping = false;
-
-    public Player(double x, double y, int w, int h) {
-        this.x = x;
-        this.y = y;
-        this.w = w;
-        this.h = h;
-        loadImages();
-    }
-
-    private void loadImages() {
-        try {
-            idleImg = ImageIO.read(new File("land and when player is not moving.png"));
-            runRightImg = ImageIO.read(new File("running right.png"));
-            runLeftImg = ImageIO.read(new File("running left.png"));
-            jumpImg = ImageIO.read(new File("jump.png"));
-        } catch (IOException e) {
-            System.out.println("Error loading player images: " + e.getMessage());
-        }
-    }
-
-    public void applyHorizontal(double a, double max, double c) {
-        dx += a * c;
-        if (dx > max) dx = max;
-        if (dx < -max) dx = -max;
-    }
-
-    public void applyFriction() {
-        dx *= onGround ? 0.7 : 0.95;
-        if (Math.abs(dx) < 0.1) dx = 0;
-    }
-
-    public void tryJump() {
-        if (onGround || coyote > 0) {
-            dy = jumpVel;
-            onGround = false;
-            coyote = 0;
-            jumping = true;
-        }
-    }
-
-    public void setJumpHeld(boolean h) {
-        jumpHeld = h;
-    }
-
-    public void updatePhysics(TileMap map) {
-        if (!onGround) dy += gravity;
-        if (dy > maxFall) dy = maxFall;
-
-        moveHorizontal(map);
-        moveVertical(map);
-
-        // Animation state logic
-        movingLeft = dx < -0.2;
-        movingRight = dx > 0.2;
-        if (onGround) jumping = false;
-    }
-
-    public void updatePhysicsDuringDeath(TileMap map) {
-        // Continue falling during death animation but no collision
-        dy += gravity;
-        if (dy > maxFall) dy = maxFall;
-        y += dy;
-        x += dx;
-        
-        // Rotate slightly during death fall for visual effect
-        jumping = true; // Use jump animation during death fall
-    }
-
-    public void startDeathAnimation() {
-        isDying = true;
-        // Give a small upward boost for dramatic effect
-        dy = -3.0;
-    }
-
-    void moveHorizontal(TileMap map) {
-        x += dx;
-        int left = (int) (x / map.tileSize);
-        int right = (int) ((x + w) / map.tileSize);
-        int top = (int) (y / map.tileSize);
-        int bottom = (int) ((y + h - 1) / map.tileSize);
-
-        for (int r = top; r <= bottom; r++) {
-            if (r < 0 || r >= map.rows) continue;
-            if (dx > 0 && right < map.cols && map.tiles[r][right] == 1) {
-                x = right * map.tileSize - w - 0.01;
-                dx = 0;
-                break;
-            }
-            if (dx < 0 && left >= 0 && map.tiles[r][left] == 1) {
-                x = (left + 1) * map.tileSize + 0.01;
-                dx = 0;
-                break;
-            }
-        }
-    }
-
-    void moveVertical(TileMap map) {
-        y += dy;
-        int left = (int) (x / map.tileSize);
-        int right = (int) ((x + w - 1) / map.tileSize);
-        int top = (int) (y / map.tileSize);
-        int bottom = (int) ((y + h) / map.tileSize);
-        onGround = false;
-
-        for (int c = left; c <= right; c++) {
-            if (c < 0 || c >= map.cols) continue;
-            if (dy > 0 && bottom < map.rows && map.tiles[bottom][c] == 1) {
-                y = bottom * map.tileSize - h - 0.01;
-                dy = 0;
-                onGround = true;
-                coyote = 10;
-                break;
-            }
-            if (dy < 0 && top >= 0 && map.tiles[top][c] == 1) {
-                y = (top + 1) * map.tileSize + 0.01;
-                dy = 0;
-                break;
-            }
-        }
-
-        if (!onGround && coyote > 0) coyote--;
-    }
-
-    public void render(Graphics2D g) {
-        BufferedImage currentFrame = idleImg;
-
-        // Pick correct image
-        if (jumping || isDying) {
-            currentFrame = jumpImg;
-        } else if (movingRight) {
-            frameCounter++;
-            if (frameCounter > animSpeed) frameCounter = 0;
-            currentFrame = runRightImg;
-        } else if (movingLeft) {
-            frameCounter++;
-            if (frameCounter > animSpeed) frameCounter = 0;
-            currentFrame = runLeftImg;
-        } else {
-            currentFrame = idleImg;
-        }
-
-        // Draw image
-        if (currentFrame != null) {
-            g.drawImage(currentFrame, (int) x, (int) y, w, h, null);
-        } else {
-            // fallback rectangle if image not loaded
-            g.setColor(Color.BLUE);
-            g.fillRect((int) x, (int) y, w, h);
-        }
-    }
-
-    public void reset(double xx, double yy) {
-        x = xx;
-        y = yy;
-        dx = dy = 0;
-        onGround = true;
-        coyote = 10;
-        jumping = false;
-        isDying = false;
-    }
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Player physics and animation state. Drawing lives in PlayerSprites so the
+// simulation runs without images or a display.
+public class Player {
+    double x, y, dx, dy;
+    double prevX, prevY; // position at the previous tick, for render interpolation
+    int w, h;
+    boolean onGround;
+    double gravity = 0.55;
+    double maxFall = 12;
+    double jumpVel = -10.2;
+    double coyote = 0; // ticks of grace left to jump after leaving the ground
+    boolean jumpHeld = false;
+    boolean isDying = false;
+
+    // Animation state
+    boolean movingLeft = false, movingRight = false, jumping = false;
+
+    public Player(double x, double y, int w, int h) {
+        this.x = x;
+        this.y = y;
+        this.prevX = x;
+        this.prevY = y;
+        this.w = w;
+        this.h = h;
+    }
+
+    public void applyHorizontal(double a, double max, double c) {
+        dx += a * c;
+        if (dx > max) dx = max;
+        if (dx < -max) dx = -max;
+    }
+
+    // Over dt ticks; pow(f, 1.0) is exactly f, so a whole tick is unchanged
+    public void applyFriction(double dt) {
+        dx *= Math.pow(onGround ? 0.7 : 0.95, dt);
+        if (Math.abs(dx) < 0.1) dx = 0;
+    }
+
+    public void tryJump() {
+        if (onGround || coyote > 0) {
+            dy = jumpVel;
+            onGround = false;
+            coyote = 0;
+            jumping = true;
+        }
+    }
+
+    public void setJumpHeld(boolean h) {
+        jumpHeld = h;
+    }
+
+    public void savePrevious() {
+        prevX = x;
+        prevY = y;
+    }
+
+    public void updatePhysics(TileMap map) {
+        updatePhysics(map, 1.0);
+    }
+
+    // dt is the step length in ticks. Movement is swept against the tiles, so
+    // a step of any length stops at the first wall or floor in its path. The
+    // axes are swept one after the other, x at the rows the player starts in
+    // and y at the columns it ends in; a long step is split into parts of at
+    // most a tile per axis so that pair covers every cell a diagonal crosses.
+    public void updatePhysics(TileMap map, double dt) {
+        if (!onGround) dy += gravity * dt;
+        if (dy > maxFall) dy = maxFall;
+
+        int parts = Math.max(1, (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)) * dt / map.tileSize));
+        for (int i = 0; i < parts; i++) {
+            moveHorizontal(map, dx * dt / parts);
+            moveVertical(map, dy * dt / parts);
+        }
+        if (!onGround && coyote > 0) coyote = Math.max(0, coyote - dt);
+
+        // Animation state logic
+        movingLeft = dx < -0.2;
+        movingRight = dx > 0.2;
+        if (onGround) jumping = false;
+    }
+
+    public void updatePhysicsDuringDeath(TileMap map) {
+        // Continue falling during death animation but no collision
+        dy += gravity;
+        if (dy > maxFall) dy = maxFall;
+        y += dy;
+        x += dx;
+        
+        // Rotate slightly during death fall for visual effect
+        jumping = true; // Use jump animation during death fall
+    }
+
+    public void startDeathAnimation() {
+        isDying = true;
+        // Give a small upward boost for dramatic effect
+        dy = -3.0;
+    }
+
+    // Tests every tile column the leading edge crosses, nearest first; a step
+    // that stays inside one column tests that column, as a plain overlap would
+    void moveHorizontal(TileMap map, double step) {
+        int ts = map.tileSize;
+        int top = (int) (y / ts);
+        int bottom = (int) ((y + h - 1) / ts);
+
+        if (step > 0) {
+            int from = (int) ((x + w) / ts), to = (int) ((x + step + w) / ts);
+            for (int c = Math.min(from + 1, to); c <= to; c++)
+                if (map.solidColumn(c, top, bottom)) {
+                    x = c * ts - w - 0.01;
+                    dx = 0;
+                    return;
+                }
+        } else if (step < 0) {
+            int from = (int) (x / ts), to = (int) ((x + step) / ts);
+            for (int c = Math.max(from - 1, to); c >= to; c--)
+                if (map.solidColumn(c, top, bottom)) {
+                    x = (c + 1) * ts + 0.01;
+                    dx = 0;
+                    return;
+                }
+        }
+        x += step;
+    }
+
+    // Same sweep over tile rows. A player at rest stays on the ground only
+    // while there is floor right under the feet.
+    void moveVertical(TileMap map, double step) {
+        int ts = map.tileSize;
+        int left = (int) (x / ts);
+        int right = (int) ((x + w - 1) / ts);
+        onGround = false;
+
+        // One masked word test per chunk the player's width spans
+        if (step > 0) {
+            int from = (int) ((y + h) / ts), to = (int) ((y + step + h) / ts);
+            for (int r = Math.min(from + 1, to); r <= to; r++)
+                if (map.solidSpan(r, left, right)) {
+                    y = r * ts - h - 0.01;
+                    land();
+                    return;
+                }
+        } else if (step < 0) {
+            int from = (int) (y / ts), to = (int) ((y + step) / ts);
+            for (int r = Math.max(from - 1, to); r >= to; r--)
+                if (map.solidSpan(r, left, right)) {
+                    y = (r + 1) * ts + 0.01;
+                    dy = 0;
+                    return;
+                }
+        } else if (map.solidSpan((int) ((y + h + 0.02) / ts), left, right)) {
+            land();
+            return;
+        }
+        y += step;
+    }
+
+    void land() {
+        dy = 0;
+        onGround = true;
+        coyote = 10;
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        out.writeDouble(x); out.writeDouble(y);
+        out.writeDouble(dx); out.writeDouble(dy);
+        out.writeDouble(prevX); out.writeDouble(prevY);
+        out.writeDouble(coyote);
+        out.writeBoolean(onGround);
+        out.writeBoolean(jumpHeld);
+        out.writeBoolean(isDying);
+        out.writeBoolean(movingLeft);
+        out.writeBoolean(movingRight);
+        out.writeBoolean(jumping);
+    }
+
+    void readState(DataInput in) throws IOException {
+        x = in.readDouble(); y = in.readDouble();
+        dx = in.readDouble(); dy = in.readDouble();
+        prevX = in.readDouble(); prevY = in.readDouble();
+        coyote = in.readDouble();
+        onGround = in.readBoolean();
+        jumpHeld = in.readBoolean();
+        isDying = in.readBoolean();
+        movingLeft = in.readBoolean();
+        movingRight = in.readBoolean();
+        jumping = in.readBoolean();
+    }
+
+    public void reset(double xx, double yy) {
+        x = xx;
+        y = yy;
+        prevX = xx;
+        prevY = yy;
+        dx = dy = 0;
+        onGround = true;
+        coyote = 10;
+        jumping = false;
+        isDying = false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// Player images and drawing, kept out of Player so the simulation has no
+// asset or display dependency. Frames live in one SpriteAtlas at the player's
+// size; animations advance with simulation ticks, not rendered frames.
+public class PlayerSprites {
+    Assets.Handle idleImg, runRightImg, runLeftImg, jumpImg;
+    SpriteAtlas atlas;
+    int atlasSheets; // images the atlas was built from
+    // Null while its image loads, or for good if it failed: drawn as the box
+    SpriteAtlas.Animation idle, runRight, runLeft, jump;
+    SpriteAtlas.Animation current;
+    long animStart; // tick the current animation started on
+    int animSpeed = 10; // ticks per running frame; lower = faster animation
+    // Where and which frame the last render() drew; frame -1 is the fallback box
+    int drawnX = Integer.MIN_VALUE, drawnY, drawnFrame = -2;
+
+    // Returns at once; the images arrive from the asset loader
+    void loadImages() {
+        idleImg = Assets.load("land and when player is not moving.png");
+        runRightImg = Assets.load("running right.png");
+        runLeftImg = Assets.load("running left.png");
+        jumpImg = Assets.load("jump.png");
+    }
+
+    // Rebuilds the atlas each time another image arrives, so every animation
+    // shows as soon as its own image is in, whatever happens to the others
+    void update(Player p) {
+        BufferedImage i = idleImg.image, r = runRightImg.image, l = runLeftImg.image, j = jumpImg.image;
+        int n = (i != null ? 1 : 0) + (r != null ? 1 : 0) + (l != null ? 1 : 0) + (j != null ? 1 : 0);
+        if (n == atlasSheets) return;
+        SpriteAtlas a = new SpriteAtlas(p.w, p.h);
+        idle = animation(a, i);
+        jump = animation(a, j);
+        runRight = animation(a, r);
+        runLeft = animation(a, l);
+        a.build();
+        atlas = a;
+        atlasSheets = n;
+    }
+
+    // Every frame of the sheet in a loop; a one-frame sheet just stays put
+    SpriteAtlas.Animation animation(SpriteAtlas a, BufferedImage sheet) {
+        return sheet == null ? null : a.animation(a.addSheet(sheet), SpriteAtlas.frames(sheet), animSpeed, true);
+    }
+
+    static int x(Player p, double alpha) { return (int) (p.prevX + (p.x - p.prevX) * alpha); }
+    static int y(Player p, double alpha) { return (int) (p.prevY + (p.y - p.prevY) * alpha); }
+
+    // Atlas frame to show at this tick, or -1 while its image is missing
+    int frame(Player p, long tick) {
+        update(p);
+
+        // Pick correct animation
+        SpriteAtlas.Animation anim;
+        if (p.jumping || p.isDying) anim = jump;
+        else if (p.movingRight) anim = runRight;
+        else if (p.movingLeft) anim = runLeft;
+        else anim = idle;
+        if (anim == null) return -1;
+        if (anim != current) {
+            current = anim;
+            animStart = tick;
+        }
+        return anim.frameAt(Math.max(0, tick - animStart));
+    }
+
+    // Whether render() would draw something other than it did last time
+    boolean changed(Player p, double alpha, long tick) {
+        return x(p, alpha) != drawnX || y(p, alpha) != drawnY || frame(p, tick) != drawnFrame;
+    }
+
+    // alpha interpolates between the player's previous and current tick
+    void render(Graphics2D g, Player p, double alpha, long tick) {
+        int rx = x(p, alpha), ry = y(p, alpha), f = frame(p, tick);
+        drawnX = rx;
+        drawnY = ry;
+        drawnFrame = f;
+        if (f < 0) {
+            // fallback rectangle while the images load or if one failed
+            g.setColor(Color.BLUE);
+            g.fillRect(rx, ry, p.w, p.h);
+            return;
+        }
+        atlas.draw(g, f, rx, ry);
+    }
+}
@@ -0,0 +1,58 @@
+// Watches how long frames take to draw (not to reach the screen) and steps the
+// visual quality tier down when the frame budget is being missed, and back up
+// once there is plenty of headroom.
+// Stepping up needs a much longer streak than stepping down (hysteresis).
+public class QualityGovernor {
+    static final int LOW = 0, MEDIUM = 1, HIGH = 2;
+    static final String[] NAMES = {"low", "medium", "high"};
+
+    int tier = HIGH;
+    boolean auto = true;
+    long budgetNanos;
+    double avgNanos = 0;      // smoothed frame time
+    double smoothing = 0.1;
+    int overFrames = 0, underFrames = 0;
+    int downAfter = 30;       // frames over budget before stepping down
+    int upAfter = 240;        // frames well under budget before stepping up
+    double downRatio = 0.9, upRatio = 0.5;
+
+    public QualityGovernor(int targetFps) {
+        budgetNanos = 1_000_000_000L / targetFps;
+    }
+
+    // "auto" (default) or a fixed tier name
+    static QualityGovernor fromProperty(int targetFps) {
+        QualityGovernor q = new QualityGovernor(targetFps);
+        String p = System.getProperty("tup.quality", "auto");
+        for (int i = 0; i < NAMES.length; i++)
+            if (NAMES[i].equals(p)) { q.tier = i; q.auto = false; }
+        return q;
+    }
+
+    void frameTime(long nanos) {
+        avgNanos = avgNanos == 0 ? nanos : avgNanos + (nanos - avgNanos) * smoothing;
+        if (!auto) return;
+
+        if (avgNanos > budgetNanos * downRatio) { overFrames++; underFrames = 0; }
+        else if (avgNanos < budgetNanos * upRatio) { underFrames++; overFrames = 0; }
+        else { overFrames = 0; underFrames = 0; }
+
+        if (overFrames >= downAfter && tier > LOW) setTier(tier - 1);
+        else if (underFrames >= upAfter && tier < HIGH) setTier(tier + 1);
+    }
+
+    void setTier(int t) {
+        tier = t;
+        overFrames = underFrames = 0;
+        // Let the average settle at the new tier before judging it
+        avgNanos = budgetNanos * (downRatio + upRatio) / 2;
+        System.out.println("Quality tier: " + NAMES[tier]);
+    }
+
+    // What each tier allows
+    boolean composites() { return tier >= MEDIUM; }
+    boolean backgroundImage() { return tier >= MEDIUM; }
+    int starCount() { return tier == HIGH ? 40 : (tier == MEDIUM ? 20 : 0); }
+
+    String tierName() { return NAMES[tier]; }
+}
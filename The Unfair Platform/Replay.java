@@ -0,0 +1,69 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Deterministic playback of an InputLog into a fresh World. Keyframes (World
+// snapshots) are taken every keyframeInterval ticks as playback passes them,
+// so seeking backwards restores the nearest earlier keyframe and replays
+// only the remainder.
+//
+// Run headless as fast as the CPU allows:
+//   java -Djava.awt.headless=true Replay session.tupi [tick]
+public class Replay {
+    final InputLog log;
+    final int viewW, viewH;
+    World world;
+    int keyframeInterval = 600; // 10 s at 60 Hz
+    byte[][] keyframes = new byte[16][];
+
+    public Replay(InputLog log, int viewW, int viewH) {
+        this.log = log;
+        this.viewW = viewW;
+        this.viewH = viewH;
+        world = new World(viewW, viewH);
+        keyframes[0] = world.snapshot();
+    }
+
+    boolean finished() {
+        return world.ticks >= log.length();
+    }
+
+    // Advances one tick with the recorded input
+    void step() {
+        world.step(log.maskAt(world.ticks));
+        if (world.ticks % keyframeInterval == 0) {
+            int k = (int) (world.ticks / keyframeInterval);
+            if (k >= keyframes.length) keyframes = Arrays.copyOf(keyframes, Math.max(k + 1, keyframes.length * 2));
+            if (keyframes[k] == null) keyframes[k] = world.snapshot();
+        }
+    }
+
+    // Puts the world at the given tick, reusing keyframes where possible
+    void seek(long tick) {
+        tick = Math.min(tick, log.length());
+        int k = (int) Math.min(tick / keyframeInterval, keyframes.length - 1);
+        while (k > 0 && keyframes[k] == null) k--;
+        if (tick < world.ticks || (long) k * keyframeInterval > world.ticks) world.restore(keyframes[k]);
+        while (world.ticks < tick) step();
+    }
+
+    void runToEnd() {
+        while (!finished()) step();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Replay <recording> [tick]");
+            return;
+        }
+        InputLog log = InputLog.load(new File(args[0]));
+        Replay r = new Replay(log, 960, 640);
+        long start = System.nanoTime();
+        if (args.length > 1) r.seek(Long.parseLong(args[1]));
+        else r.runToEnd();
+        double ms = (System.nanoTime() - start) / 1e6;
+        World w = r.world;
+        System.out.printf("tick %d/%d  level %d  player (%.2f, %.2f)  died %b  %.1f ms%n",
+                w.ticks, log.length(), w.currentLevel, w.player.x, w.player.y, w.playerDied, ms);
+    }
+}
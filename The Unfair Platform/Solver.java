@@ -0,0 +1,338 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Proves each level beatable by searching the real simulation: a best-first
+// (A*) search over World states where every edge is one input held for
+// `repeat` ticks. Nodes wait in buckets by f = steps taken + a lower bound on
+// the steps left (horizontal distance to the goal at full running speed), so
+// the first goal reached from the lowest bucket is a route with the fewest
+// ticks at that granularity.
+//
+// Each bucket is expanded on a ForkJoinPool, split in halves down to small
+// ranges so idle workers steal the rest. Workers keep their own
+// World and move it between states with restore(). States are deduplicated
+// by a hash of the gameplay state; the player's position and speed are
+// rounded first, so near-identical states collapse into one. Workers only
+// look states up; the new ones are added afterwards on one thread, in
+// frontier order, so the parent that keeps a state, and so the route, does
+// not depend on scheduling. Every stored state is a real snapshot, so a
+// route found is exact; the rounding can only cost completeness.
+//
+// A level the exact search cannot finish within the state limit is searched
+// again with the bound inflated by the fallback weight; that still proves
+// the level beatable, with a route that may be a little longer.
+//
+// Levels are solved in order from a fresh game, and the whole run can be
+// saved as an input recording that Replay plays back:
+//   java -Djava.awt.headless=true Solver [recording.tupi]
+// Options: -Dtup.solveRepeat=<ticks per input, default 4>,
+//          -Dtup.solveStates=<state limit per search, default 1M>,
+//          -Dtup.solveWeight=<fallback weight, default 1.5; 1 for exact only>
+public class Solver {
+    static final int VIEW_W = 960, VIEW_H = 640;
+    static final int HOLD = World.JUMP_HELD; // holding jump also gives full air control
+    // Inputs tried at each step; JUMP_PRESSED only goes on the first tick of the hold
+    static final int[] ACTIONS = {
+            0,
+            World.LEFT | HOLD, World.RIGHT | HOLD,
+            HOLD | World.JUMP_PRESSED,
+            World.LEFT | HOLD | World.JUMP_PRESSED, World.RIGHT | HOLD | World.JUMP_PRESSED,
+    };
+    static final int SPLIT = 64; // frontier nodes a worker expands without splitting further
+    static final int NEAR = 8 * World.TILE; // reach of the traps that count towards a state's key
+
+    final int repeat;
+    final int stateLimit;
+    double weight = 1; // above 1 the bound is inflated: far fewer states, route no longer the shortest
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    final ThreadLocal<World> worlds = ThreadLocal.withInitial(() -> new World(VIEW_W, VIEW_H));
+    StateTable seen;
+    int explored;
+    List<List<Node>> buckets;
+
+    public Solver(int repeat, int stateLimit) {
+        this.repeat = repeat;
+        this.stateLimit = stateLimit;
+    }
+
+    // A search node; state is dropped once the node has been expanded
+    static final class Node {
+        final Node parent;
+        final int action;
+        final int depth, f;
+        final long key;
+        byte[] state;
+
+        Node(Node parent, int action, int f, long key, byte[] state) {
+            this.parent = parent;
+            this.action = action;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+            this.f = f;
+            this.key = key;
+            this.state = state;
+        }
+    }
+
+    // What one worker found in its slice of the frontier
+    static final class Expansion {
+        final List<Node> next = new ArrayList<>();
+        Node goal;
+    }
+
+    // Input masks, one per tick, from a playable state to the goal; null if
+    // the search ran out of states or moves
+    int[] solve(byte[] start) {
+        seen = new StateTable(stateLimit);
+        explored = 0;
+        buckets = new ArrayList<>();
+        World w = worlds.get();
+        w.restore(start);
+        bucket(bound(w)).add(new Node(null, -1, bound(w), key(w), start));
+        Node found = null;
+        for (int f = 0; f < buckets.size(); f++) {
+            // Children that keep the same f land back in this bucket; drain it
+            List<Node> nodes;
+            while (!(nodes = buckets.get(f)).isEmpty()) {
+                if (found != null && found.f <= f) return inputs(found);
+                if (explored >= stateLimit) return null;
+                buckets.set(f, new ArrayList<>());
+                Expansion e = pool.invoke(new Expand(nodes, 0, nodes.size()));
+                for (Node n : nodes) n.state = null;
+                if (e.goal != null && (found == null || e.goal.f < found.f)) found = e.goal;
+                for (Node n : e.next) {
+                    // Within a bucket the first in frontier order keeps a state
+                    if (!seen.add(n.key)) continue;
+                    if (++explored >= stateLimit) return null;
+                    // An inflated bound can put a child below the bucket being drained
+                    bucket(Math.max(n.f, f)).add(n);
+                }
+            }
+            if (found != null && found.f <= f + 1) return inputs(found);
+        }
+        return found == null ? null : inputs(found);
+    }
+
+    List<Node> bucket(int f) {
+        while (buckets.size() <= f) buckets.add(new ArrayList<>());
+        return buckets.get(f);
+    }
+
+    // Steps still needed at least: the gap to the nearest goal tile, covered
+    // at full speed. At weight 1 it never overestimates and drops by at most
+    // one per step, so f never decreases along a route.
+    int bound(World w) {
+        Player p = w.player;
+        int[] g = w.map.goalRegions;
+        double gap = Double.MAX_VALUE;
+        for (int i = 0; i < w.map.goalRegionCount * 4; i += 4)
+            gap = Math.min(gap, Math.max(0, Math.max(g[i] - (p.x + p.w), p.x - (g[i] + g[i + 2]))));
+        return (int) Math.ceil(weight * gap / (repeat * World.MAX_SPEED));
+    }
+
+    final class Expand extends RecursiveTask<Expansion> {
+        private static final long serialVersionUID = 1L;
+        final List<Node> nodes;
+        final int from, to;
+
+        Expand(List<Node> nodes, int from, int to) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Expansion compute() {
+            if (to - from > SPLIT) {
+                int mid = (from + to) >>> 1;
+                Expand left = new Expand(nodes, from, mid);
+                left.fork();
+                Expansion right = new Expand(nodes, mid, to).compute();
+                Expansion e = left.join();
+                // Left before right keeps the children in frontier order
+                if (e.goal == null || (right.goal != null && right.goal.f < e.goal.f)) e.goal = right.goal;
+                e.next.addAll(right.next);
+                return e;
+            }
+            Expansion e = new Expansion();
+            World w = worlds.get();
+            for (int i = from; i < to && e.goal == null; i++) {
+                Node n = nodes.get(i);
+                for (int a = 0; a < ACTIONS.length; a++) {
+                    w.restore(n.state);
+                    int result = advance(w, ACTIONS[a]);
+                    if (result < 0) continue;
+                    if (result > 0) {
+                        e.goal = new Node(n, a, n.depth + 1, 0, null);
+                        break;
+                    }
+                    long k = key(w);
+                    if (!seen.contains(k)) e.next.add(new Node(n, a, n.depth + 1 + bound(w), k, w.snapshot()));
+                }
+            }
+            return e;
+        }
+    }
+
+    // Holds an input for repeat ticks: 1 if the goal was reached, -1 if the
+    // player died or is falling out of the map, else 0
+    int advance(World w, int action) {
+        for (int t = 0; t < repeat; t++) {
+            w.step(t == 0 ? action : action & ~World.JUMP_PRESSED);
+            if (w.fadeState == 1) return 1;
+            if (w.playerDied || w.player.y > w.map.pixelHeight()) return -1;
+        }
+        return 0;
+    }
+
+    int[] inputs(Node goal) {
+        int depth = 0;
+        for (Node n = goal; n.parent != null; n = n.parent) depth++;
+        int[] masks = new int[depth * repeat];
+        int i = depth;
+        for (Node n = goal; n.parent != null; n = n.parent) {
+            i--;
+            int action = ACTIONS[n.action];
+            masks[i * repeat] = action;
+            for (int t = 1; t < repeat; t++) masks[i * repeat + t] = action & ~World.JUMP_PRESSED;
+        }
+        return masks;
+    }
+
+    // Gameplay state only: no tick count or camera, the player's position and
+    // speed rounded so states a fraction of a pixel apart count as one, and
+    // only the traps within NEAR pixels of the player, the ones that can
+    // still decide the next few moves
+    static long key(World w) {
+        Player p = w.player;
+        TileMap m = w.map;
+        long h = w.currentLevel;
+        h = mix(h, Math.round(p.x / 2));
+        h = mix(h, Math.round(p.y / 2));
+        h = mix(h, Math.round(p.dx));
+        h = mix(h, Math.round(p.dy));
+        h = mix(h, (long) p.coyote << 2 | (p.onGround ? 2 : 0) | (w.jumpQueued ? 1 : 0));
+        double lo = p.x - NEAR, hi = p.x + NEAR;
+        // Spikes by phase and whether they can hurt yet, not by exact height
+        Spikes s = m.spikes;
+        int now = m.timers.now;
+        for (int i = 0; i < s.count; i++)
+            if (s.x[i] > lo && s.x[i] < hi) h = mix(h, i << 3 | s.state(i, now) << 1 | (s.isActive(i, now) ? 1 : 0));
+        // Fakes by phase, with their timers in coarse steps
+        FakeTiles f = m.fakeTiles;
+        for (int i = 0; i < f.count; i++)
+            if (f.x[i] > lo && f.x[i] < hi) {
+                int left = f.due[i] < 0 ? 0 : f.due[i] - now, fade = f.fading[i] && !f.faded[i] ? now - f.fadeStart[i] : 0;
+                h = mix(h, (long) i << 32 | left / 16 << 8 | fade / 8 << 2 | (f.fading[i] ? 2 : 0) | (f.solid[i] ? 1 : 0));
+            }
+        Enemies e = m.enemies;
+        for (int i = 0; i < e.count; i++)
+            if (e.cx[i] > lo && e.cx[i] < hi) h = mix(h, Double.doubleToLongBits(e.t[i]) + i);
+        return h;
+    }
+
+    static long mix(long h, long v) {
+        h = (h ^ v) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // Insert-only open-addressing set of longs, sized for limit keys at most
+    // half full. add() runs on one thread between expansions; contains() on
+    // the workers during them, when nothing writes.
+    static final class StateTable {
+        final long[] slots;
+        final int mask, limit;
+        int size = 0;
+
+        StateTable(int limit) {
+            this.limit = limit;
+            slots = new long[Integer.highestOneBit(Math.max(1, limit - 1)) << 2];
+            mask = slots.length - 1;
+        }
+
+        // True if the key was not there before
+        boolean add(long key) {
+            if (key == 0) key = 1;
+            int i = slot(key);
+            if (slots[i] == key) return false;
+            if (size >= limit) throw new IllegalStateException("State table full at " + size);
+            slots[i] = key;
+            size++;
+            return true;
+        }
+
+        boolean contains(long key) {
+            if (key == 0) key = 1;
+            return slots[slot(key)] == key;
+        }
+
+        // Where key is, or the empty slot it would go in
+        int slot(long key) {
+            int i = (int) (key ^ (key >>> 32)) & mask;
+            while (slots[i] != 0 && slots[i] != key) i = (i + 1) & mask;
+            return i;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Solver solver = new Solver(Integer.getInteger("tup.solveRepeat", 4), Integer.getInteger("tup.solveStates", 1 << 20));
+        double fallback = Double.parseDouble(System.getProperty("tup.solveWeight", "1.5"));
+        World w = new World(VIEW_W, VIEW_H);
+        InputLog log = new InputLog(World.TICK_RATE);
+        boolean all = true;
+        for (int lvl = 1; lvl <= World.LEVEL_COUNT; lvl++) {
+            // Sit through the fade and the intro card
+            while (w.showingIntro || w.fadeState == 1) {
+                w.step(0);
+                log.append(0);
+            }
+            long start = System.nanoTime();
+            byte[] state = w.snapshot();
+            solver.weight = 1;
+            int[] route = solver.solve(state);
+            int states = solver.explored;
+            if (route == null && fallback > 1) {
+                solver.weight = fallback;
+                route = solver.solve(state);
+                states += solver.explored;
+            }
+            double ms = (System.nanoTime() - start) / 1e6;
+            if (route == null) {
+                System.out.printf("level %d: no route found (%d states, %.0f ms)%n", lvl, states, ms);
+                all = false;
+                break;
+            }
+            for (int mask : route) {
+                w.step(mask);
+                log.append(mask);
+            }
+            System.out.printf("level %d: solved in %d ticks (%.2f s)%s, %d states, %.0f ms%n",
+                    lvl, route.length, route.length / (double) World.TICK_RATE,
+                    solver.weight > 1 ? ", not proven shortest" : "", states, ms);
+            System.out.println("  " + describe(route));
+        }
+        if (args.length > 0 && all) {
+            log.save(new File(args[0]));
+            System.out.println("Saved " + args[0] + " (" + log.length() + " ticks)");
+        }
+        System.exit(all ? 0 : 1);
+    }
+
+    // Route as runs of held inputs, e.g. "R x12, R+jump x4"
+    static String describe(int[] route) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < route.length; ) {
+            int j = i + 1;
+            while (j < route.length && route[j] == (route[i] & ~World.JUMP_PRESSED)) j++;
+            if (sb.length() > 0) sb.append(", ");
+            int m = route[i];
+            String dir = (m & World.LEFT) != 0 ? "L" : (m & World.RIGHT) != 0 ? "R" : "-";
+            sb.append(dir).append((m & World.JUMP_PRESSED) != 0 ? "+jump" : "").append(" x").append(j - i);
+            i = j;
+        }
+        return sb.toString();
+    }
+}
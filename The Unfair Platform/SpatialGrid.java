@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+// Uniform grid over integer ids (indices into an entity list). Each id is
+// registered in every cell its box touches; queries return each id once.
+// Nothing is allocated after the grid has grown to its working size.
+public class SpatialGrid {
+    final int cellSize;
+    int gridCols, gridRows;
+    int[][] cells = new int[0][];
+    int[] cellCounts = new int[0];
+
+    // Per-id cell range, for moving and removing
+    int[] minCx = new int[0], minCy = new int[0], maxCx = new int[0], maxCy = new int[0];
+    boolean[] present = new boolean[0];
+
+    // Query output and de-duplication
+    int[] result = new int[16];
+    int[] stamp = new int[0];
+    int queryStamp = 0;
+
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    // Empties the grid and sizes it for a world of the given pixel size
+    void reset(int widthPx, int heightPx, int capacity) {
+        gridCols = Math.max(1, (widthPx + cellSize - 1) / cellSize);
+        gridRows = Math.max(1, (heightPx + cellSize - 1) / cellSize);
+        int n = gridCols * gridRows;
+        if (cells.length < n) {
+            cells = Arrays.copyOf(cells, n);
+            cellCounts = new int[n];
+        } else {
+            Arrays.fill(cellCounts, 0);
+        }
+        ensureIds(capacity);
+        Arrays.fill(present, false);
+    }
+
+    void ensureIds(int capacity) {
+        if (present.length >= capacity) return;
+        int cap = Math.max(capacity, present.length * 2);
+        minCx = Arrays.copyOf(minCx, cap);
+        minCy = Arrays.copyOf(minCy, cap);
+        maxCx = Arrays.copyOf(maxCx, cap);
+        maxCy = Arrays.copyOf(maxCy, cap);
+        present = Arrays.copyOf(present, cap);
+        stamp = Arrays.copyOf(stamp, cap);
+    }
+
+    int cellX(double px) { return clamp((int) Math.floor(px / cellSize), gridCols); }
+    int cellY(double py) { return clamp((int) Math.floor(py / cellSize), gridRows); }
+
+    static int clamp(int v, int n) { return v < 0 ? 0 : (v >= n ? n - 1 : v); }
+
+    void insert(int id, double x, double y, double w, double h) {
+        ensureIds(id + 1);
+        int cx0 = cellX(x), cy0 = cellY(y), cx1 = cellX(x + w), cy1 = cellY(y + h);
+        minCx[id] = cx0; minCy[id] = cy0; maxCx[id] = cx1; maxCy[id] = cy1;
+        present[id] = true;
+        for (int cy = cy0; cy <= cy1; cy++)
+            for (int cx = cx0; cx <= cx1; cx++) add(cy * gridCols + cx, id);
+    }
+
+    void remove(int id) {
+        if (id >= present.length || !present[id]) return;
+        for (int cy = minCy[id]; cy <= maxCy[id]; cy++)
+            for (int cx = minCx[id]; cx <= maxCx[id]; cx++) take(cy * gridCols + cx, id);
+        present[id] = false;
+    }
+
+    // Re-registers a moving id; cheap when it stays in the same cells
+    void move(int id, double x, double y, double w, double h) {
+        if (present[id] && cellX(x) == minCx[id] && cellY(y) == minCy[id]
+                && cellX(x + w) == maxCx[id] && cellY(y + h) == maxCy[id]) return;
+        remove(id);
+        insert(id, x, y, w, h);
+    }
+
+    void add(int cell, int id) {
+        int[] b = cells[cell];
+        int n = cellCounts[cell];
+        // Buckets are created on first use, so wide sparse maps stay small
+        if (b == null) cells[cell] = b = new int[4];
+        else if (n == b.length) cells[cell] = b = Arrays.copyOf(b, n * 2);
+        b[n] = id;
+        cellCounts[cell] = n + 1;
+    }
+
+    void take(int cell, int id) {
+        int[] b = cells[cell];
+        int n = cellCounts[cell];
+        for (int i = 0; i < n; i++)
+            if (b[i] == id) {
+                b[i] = b[n - 1];
+                cellCounts[cell] = n - 1;
+                return;
+            }
+    }
+
+    // Collects ids whose cells touch the box into result[0..count)
+    int query(double x, double y, double w, double h) {
+        if (++queryStamp == 0) { Arrays.fill(stamp, 0); queryStamp = 1; }
+        int cx0 = cellX(x), cy0 = cellY(y), cx1 = cellX(x + w), cy1 = cellY(y + h);
+        int count = 0;
+        for (int cy = cy0; cy <= cy1; cy++)
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int cell = cy * gridCols + cx;
+                int[] b = cells[cell];
+                for (int i = 0, n = cellCounts[cell]; i < n; i++) {
+                    int id = b[i];
+                    if (stamp[id] == queryStamp) continue;
+                    stamp[id] = queryStamp;
+                    if (count == result.length) result = Arrays.copyOf(result, count * 2);
+                    result[count++] = id;
+                }
+            }
+        return count;
+    }
+}
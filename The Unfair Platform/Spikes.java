@@ -0,0 +1,115 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A level's pop-up spikes as parallel arrays, indexed like the broadphase
+// ids. Pixel positions are worked out once in add(). A spike only stores the
+// trap-clock tick it was triggered on; its height at any later tick is looked
+// up in RISE, so a rising spike needs no per-tick update and a risen one is
+// never touched again. Only idle spikes near the player are tested each tick.
+public class Spikes {
+    static final int IDLE = 0, RISING = 1, UP = 2;
+    static final int TRIGGER_DIST = 50;
+    static final double EASE = 0.25;
+    static final double MAX_HEIGHT = 24;
+    static final int FILL = DrawBatch.argb(200, 50, 50, 255), EDGE = DrawBatch.argb(0, 0, 0, 255);
+
+    // RISE[k]: how far a spike is still sunk k eased steps after it started
+    // rising (the first step is taken on the trigger tick); 0 from RISE.length on
+    static final double[] RISE = rise();
+
+    static double[] rise() {
+        double[] r = new double[16];
+        double o = MAX_HEIGHT;
+        int k = 0;
+        r[k++] = o;
+        while (true) {
+            o += (0 - o) * EASE;
+            if (Math.abs(o) < 1.0) return Arrays.copyOf(r, k);
+            if (k == r.length) r = Arrays.copyOf(r, k * 2);
+            r[k++] = o;
+        }
+    }
+
+    final int tile;
+    int count = 0;
+    int[] col = new int[8], row = new int[8];
+    int[] x = new int[8], baseY = new int[8]; // tile's left edge and the spike's base, in pixels
+    double[] centerX = new double[8];
+    int[] triggered = new int[8]; // trap-clock tick the spike started rising, or -1
+    int[] drawn = new int[8]; // height the last render() used, for repaint tracking
+
+    public Spikes(int tile) {
+        this.tile = tile;
+    }
+
+    int add(int c, int r) {
+        if (count == col.length) grow(count * 2);
+        int i = count++;
+        col[i] = c;
+        row[i] = r;
+        x[i] = c * tile;
+        baseY[i] = r * tile;
+        centerX[i] = c * tile + tile / 2.0;
+        triggered[i] = -1;
+        drawn[i] = -1;
+        return i;
+    }
+
+    void grow(int n) {
+        col = Arrays.copyOf(col, n); row = Arrays.copyOf(row, n);
+        x = Arrays.copyOf(x, n); baseY = Arrays.copyOf(baseY, n);
+        centerX = Arrays.copyOf(centerX, n);
+        triggered = Arrays.copyOf(triggered, n);
+        drawn = Arrays.copyOf(drawn, n);
+    }
+
+    void reset() {
+        Arrays.fill(triggered, 0, count, -1);
+    }
+
+    // Starts spike i rising if it is idle and px (the player's centre) is in reach
+    void trigger(int i, double px, int now) {
+        if (triggered[i] < 0 && Math.abs(px - centerX[i]) < TRIGGER_DIST) triggered[i] = now;
+    }
+
+    double offset(int i, int now) {
+        if (triggered[i] < 0) return MAX_HEIGHT;
+        int k = now - triggered[i] + 1;
+        return k < RISE.length ? RISE[k] : 0;
+    }
+
+    int state(int i, int now) {
+        if (triggered[i] < 0) return IDLE;
+        return now - triggered[i] + 1 < RISE.length ? RISING : UP;
+    }
+
+    boolean isActive(int i, int now) { return triggered[i] >= 0 && offset(i, now) < MAX_HEIGHT * 0.3; }
+
+    int height(int i, int now) { return (int) (MAX_HEIGHT - offset(i, now)); }
+
+    boolean hits(int i, Player p, int now) {
+        int height = height(i, now);
+        return Aabb.overlaps(p, x[i] + 4, baseY[i] - height, tile - 8, height);
+    }
+
+    void render(DrawBatch b, Viewport view, int now) {
+        for (int i = 0; i < count; i++) {
+            if (view.cullEntity(x[i], baseY[i] - MAX_HEIGHT, tile, MAX_HEIGHT)) continue;
+            int height = drawn[i] = height(i, now);
+            if (height < 2) continue;
+            int left = x[i], mid = left + tile / 2, top = baseY[i] - height, bottom = baseY[i];
+            b.fillTriangle(mid, top, left + 5, bottom, left + tile - 5, bottom, FILL);
+            b.drawTriangle(mid, top, left + 5, bottom, left + tile - 5, bottom, EDGE);
+        }
+    }
+
+    void writeState(DataOutput out) throws IOException {
+        for (int i = 0; i < count; i++) out.writeInt(triggered[i]);
+    }
+
+    void readState(DataInput in) throws IOException {
+        for (int i = 0; i < count; i++) triggered[i] = in.readInt();
+    }
+}
@@ -0,0 +1,79 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sprite frames packed into one image, each pre-scaled to the size it is drawn
+// at, so drawing a frame is a same-size sub-rectangle blit from a single image.
+// The atlas is never written after build(), so Java2D keeps it as a managed
+// image cached in video memory.
+//
+// Sheets are horizontal strips: a W x H sheet that is a whole number (two or
+// more) of H x H squares holds that many frames. Any other image is one frame,
+// scaled whole to the frame size.
+public class SpriteAtlas {
+    // A run of consecutive atlas frames shown ticksPerFrame ticks each
+    record Animation(int first, int count, int ticksPerFrame, boolean loop) {
+        int frameAt(long ticks) {
+            long i = ticks / ticksPerFrame;
+            return first + (int) (loop ? i % count : Math.min(i, count - 1));
+        }
+    }
+
+    final int frameW, frameH;
+    final List<BufferedImage> pending = new ArrayList<>();
+    BufferedImage image; // null until build()
+    int cols;
+
+    public SpriteAtlas(int frameW, int frameH) {
+        this.frameW = frameW;
+        this.frameH = frameH;
+    }
+
+    // Adds every frame of a sheet; returns the index of the first
+    int addSheet(BufferedImage sheet) {
+        int first = pending.size();
+        int n = frames(sheet), side = sheet.getHeight();
+        if (n == 1) pending.add(scaled(sheet));
+        else for (int i = 0; i < n; i++) pending.add(scaled(sheet.getSubimage(i * side, 0, side, side)));
+        return first;
+    }
+
+    // Frames in a sheet, as laid out above
+    static int frames(BufferedImage sheet) {
+        int w = sheet.getWidth(), h = sheet.getHeight();
+        return w >= 2 * h && w % h == 0 ? w / h : 1;
+    }
+
+    BufferedImage scaled(BufferedImage src) {
+        BufferedImage out = new BufferedImage(frameW, frameH, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        // Nearest neighbour keeps the pixel art crisp, as the per-frame scaling did
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.drawImage(src, 0, 0, frameW, frameH, null);
+        g.dispose();
+        return out;
+    }
+
+    Animation animation(int first, int count, int ticksPerFrame, boolean loop) {
+        return new Animation(first, count, ticksPerFrame, loop);
+    }
+
+    // Packs the added frames into a near-square grid
+    void build() {
+        int n = pending.size();
+        cols = Math.max(1, (int) Math.ceil(Math.sqrt(n)));
+        int rows = Math.max(1, (n + cols - 1) / cols);
+        BufferedImage img = new BufferedImage(cols * frameW, rows * frameH, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        for (int i = 0; i < n; i++) g.drawImage(pending.get(i), i % cols * frameW, i / cols * frameH, null);
+        g.dispose();
+        pending.clear();
+        image = Assets.toCompatible(img);
+    }
+
+    void draw(Graphics2D g, int frame, int x, int y) {
+        int sx = frame % cols * frameW, sy = frame / cols * frameH;
+        g.drawImage(image, x, y, x + frameW, y + frameH, sx, sy, sx + frameW, sy + frameH, null);
+    }
+}
@@ -0,0 +1,125 @@
+import java.awt.*;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
+
+// Static solid/goal tiles baked into accelerated image chunks. Rebuilt only
+// when the map's level changes; each chunk is re-rendered if its surface is lost.
+// Chunks are baked lazily as they come into view and flushed once they are
+// well out of it, so only the area around the camera holds image memory.
+public class TileLayerCache {
+    static final int CHUNK = 16; // tiles per chunk side
+    static final byte UNKNOWN = 0, EMPTY = 1, FILLED = 2;
+    static final int KEEP_MARGIN = 2; // chunks beyond the view kept baked
+
+    final TileMap map;
+    VolatileImage[] chunks = new VolatileImage[0];
+    byte[] content = new byte[0];
+    int[] baked = new int[16]; // indices holding an image
+    int bakedCount;
+    int builtVersion = -1;
+    int chunkCols, chunkRows;
+    GraphicsConfiguration gc;
+
+    public TileLayerCache(TileMap map) {
+        this.map = map;
+    }
+
+    void render(Graphics2D g, Viewport view) {
+        GraphicsConfiguration target = g.getDeviceConfiguration();
+        if (builtVersion != map.version || gc != target) rebuild(target);
+
+        int px = CHUNK * map.tileSize;
+        int c0 = Math.max(view.firstCol(px), 0), c1 = Math.min(view.lastCol(px), chunkCols - 1);
+        int r0 = Math.max(view.firstRow(px), 0), r1 = Math.min(view.lastRow(px), chunkRows - 1);
+        int drawn = 0;
+        for (int cr = r0; cr <= r1; cr++)
+            for (int cc = c0; cc <= c1; cc++)
+                if (filled(cc, cr)) {
+                    drawChunk(g, cc, cr, cc * px, cr * px);
+                    drawn++;
+                }
+        // Every other chunk of the grid, empty, unseen or out of view, was not drawn
+        view.chunksDrawn += drawn;
+        view.chunksSkipped += chunks.length - drawn;
+        evictOutside(c0 - KEEP_MARGIN, r0 - KEEP_MARGIN, c1 + KEEP_MARGIN, r1 + KEEP_MARGIN);
+    }
+
+    void rebuild(GraphicsConfiguration target) {
+        flush();
+        gc = target;
+        builtVersion = map.version;
+        chunkCols = (map.cols + CHUNK - 1) / CHUNK;
+        chunkRows = (map.rows + CHUNK - 1) / CHUNK;
+        chunks = new VolatileImage[chunkCols * chunkRows];
+        content = new byte[chunkCols * chunkRows];
+    }
+
+    boolean filled(int cc, int cr) {
+        int i = cr * chunkCols + cc;
+        if (content[i] == UNKNOWN) {
+            boolean any = map.hasStaticTiles(cc * CHUNK - 1, cr * CHUNK - 1, (cc + 1) * CHUNK - 1, (cr + 1) * CHUNK - 1);
+            content[i] = any ? FILLED : EMPTY;
+        }
+        return content[i] == FILLED;
+    }
+
+    void drawChunk(Graphics2D g, int cc, int cr, int x, int y) {
+        int i = cr * chunkCols + cc;
+        VolatileImage img = chunks[i];
+        do {
+            int valid = img == null ? VolatileImage.IMAGE_INCOMPATIBLE : img.validate(gc);
+            if (valid == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (img != null) img.flush();
+                else track(i);
+                int px = CHUNK * map.tileSize;
+                img = gc.createCompatibleVolatileImage(px, px, Transparency.TRANSLUCENT);
+                chunks[i] = img;
+                bake(img, cc, cr);
+            } else if (valid == VolatileImage.IMAGE_RESTORED) {
+                bake(img, cc, cr);
+            }
+            g.drawImage(img, x, y, null);
+        } while (img.contentsLost());
+    }
+
+    void track(int i) {
+        if (bakedCount == baked.length) baked = Arrays.copyOf(baked, bakedCount * 2);
+        baked[bakedCount++] = i;
+    }
+
+    void evictOutside(int c0, int r0, int c1, int r1) {
+        int keep = 0;
+        for (int n = 0; n < bakedCount; n++) {
+            int i = baked[n];
+            int cc = i % chunkCols, cr = i / chunkCols;
+            if (cc < c0 || cc > c1 || cr < r0 || cr > r1) {
+                chunks[i].flush();
+                chunks[i] = null;
+            } else {
+                baked[keep++] = i;
+            }
+        }
+        bakedCount = keep;
+    }
+
+    void bake(VolatileImage img, int cc, int cr) {
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, img.getWidth(), img.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            int c0 = cc * CHUNK, r0 = cr * CHUNK;
+            g.translate(-c0 * map.tileSize, -r0 * map.tileSize);
+            // Start one tile early so outlines spilling over the chunk edge are kept
+            map.renderStaticTiles(g, c0 - 1, r0 - 1, c0 + CHUNK - 1, r0 + CHUNK - 1);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    void flush() {
+        for (int n = 0; n < bakedCount; n++) chunks[baked[n]].flush();
+        bakedCount = 0;
+        Arrays.fill(chunks, null);
+    }
+}
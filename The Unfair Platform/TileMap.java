@@ -1,146 +1,319 @@
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
-
-public class TileMap {
-    int tileSize;
-    int cols = 60;
-    int rows = 36;
-    int[][] tiles;
-    List<Spike> spikes = new ArrayList<>();
-    List<FakeTile> fakeTiles = new ArrayList<>();
-    List<EnemyBlock> enemies = new ArrayList<>();
-
-    public TileMap(int t) {
-        tileSize = t;
-        tiles = new int[rows][cols];
-    }
-
-    public void createLevel(int lvl) {
-        spikes.clear();
-        fakeTiles.clear();
-        enemies.clear();
-
-        for (int r = 0; r < rows; r++)
-            for (int c = 0; c < cols; c++)
-                tiles[r][c] = 0;
-
-        // Level 1 - No fake tiles
-        if (lvl == 1) {
-            for (int c = 0; c < 28; c++) tiles[rows - 4][c] = 1;
-            tiles[rows - 7][15] = 1;
-            spikes.add(new Spike(8, rows - 4, tileSize));
-            spikes.add(new Spike(9, rows - 4, tileSize));
-            spikes.add(new Spike(18, rows - 4, tileSize));
-            spikes.add(new Spike(19, rows - 4, tileSize));
-            spikes.add(new Spike(25, rows - 4, tileSize));
-            tiles[rows - 4][28] = 2;
-            tiles[rows - 4][29] = 2;
-        }
-
-        // Level 2 - Fake tiles without animation (immediate disappearance)
-        if (lvl == 2) {
-            for (int c = 0; c < 35; c++)
-                if (c % 5 != 0) tiles[rows - 4][c] = 1;
-            spikes.add(new Spike(6, rows - 4, tileSize));
-            spikes.add(new Spike(7, rows - 4, tileSize));
-            spikes.add(new Spike(11, rows - 4, tileSize));
-            spikes.add(new Spike(12, rows - 4, tileSize));
-            spikes.add(new Spike(16, rows - 4, tileSize));
-            spikes.add(new Spike(17, rows - 4, tileSize));
-            spikes.add(new Spike(26, rows - 4, tileSize));
-            spikes.add(new Spike(27, rows - 4, tileSize));
-            spikes.add(new Spike(31, rows - 4, tileSize));
-            spikes.add(new Spike(32, rows - 4, tileSize));
-
-            // Level 2 fake tiles - immediate disappearance
-            fakeTiles.add(new FakeTile(8, rows - 4, tileSize, false));
-            fakeTiles.add(new FakeTile(9, rows - 4, tileSize, false));
-            fakeTiles.add(new FakeTile(18, rows - 4, tileSize, false));
-            fakeTiles.add(new FakeTile(19, rows - 4, tileSize, false));
-            fakeTiles.add(new FakeTile(28, rows - 4, tileSize, false));
-            fakeTiles.add(new FakeTile(29, rows - 4, tileSize, false));
-
-            tiles[rows - 6][13] = 1;
-            tiles[rows - 8][23] = 1;
-            tiles[rows - 6][33] = 1;
-            tiles[rows - 4][35] = 2;
-            tiles[rows - 4][36] = 2;
-            tiles[rows - 4][37] = 2;
-        }
-
-        // Level 3 - Fake tiles WITH animation
-        if (lvl == 3) {
-            for (int c = 0; c < 50; c++)
-                if (c % 4 != 0) tiles[rows - 4][c] = 1;
-
-            int[] spikeCols = {5,6,9,10,13,14,17,18,21,22,25,26,29,30,33,34,37,38,41,42};
-            for (int sc : spikeCols) spikes.add(new Spike(sc, rows - 4, tileSize));
-
-            // Level 3 fake tiles - WITH fade animation
-            for(int c=7;c<10;c++) fakeTiles.add(new FakeTile(c, rows-4, tileSize, true));
-            for(int c=15;c<18;c++) fakeTiles.add(new FakeTile(c, rows-4, tileSize, true));
-            for(int c=23;c<26;c++) fakeTiles.add(new FakeTile(c, rows-4, tileSize, true));
-            for(int c=31;c<34;c++) fakeTiles.add(new FakeTile(c, rows-4, tileSize, true));
-            for(int c=39;c<42;c++) fakeTiles.add(new FakeTile(c, rows-4, tileSize, true));
-
-            tiles[rows-4][50]=2;
-            tiles[rows-4][51]=2;
-            tiles[rows-4][52]=2;
-            tiles[rows-4][53]=2;
-        }
-    }
-
-    public void resetTraps() {
-        for (Spike s : spikes) s.reset();
-        for (FakeTile ft : fakeTiles) ft.reset();
-    }
-
-    public void render(Graphics2D g) {
-        for(int r=0;r<rows;r++)
-            for(int c=0;c<cols;c++){
-                int t = tiles[r][c];
-                if(t==1){
-                    g.setColor(new Color(90,60,30));
-                    g.fillRect(c*tileSize,r*tileSize,tileSize,tileSize);
-                    g.setColor(new Color(70,40,20));
-                    g.drawRect(c*tileSize,r*tileSize,tileSize,tileSize);
-                } else if(t==2){
-                    g.setColor(new Color(80,200,120));
-                    g.fillRect(c*tileSize,r*tileSize,tileSize,tileSize);
-                    g.setColor(new Color(60,180,100));
-                    g.drawRect(c*tileSize,r*tileSize,tileSize,tileSize);
-                }
-            }
-        for(FakeTile ft: fakeTiles) ft.render(g);
-        for(EnemyBlock eb: enemies) eb.render(g);
-        for(Spike s: spikes) s.render(g);
-    }
-
-    public void update(Player p){
-        for(FakeTile ft: fakeTiles) ft.update(p);
-        for(Spike s: spikes) s.update(p);
-        for(EnemyBlock eb: enemies) eb.update(p);
-    }
-
-    public boolean checkGoal(Player p){
-        Rectangle pr = new Rectangle((int)p.x,(int)p.y,p.w,p.h);
-        for(int r=0;r<rows;r++)
-            for(int c=0;c<cols;c++)
-                if(tiles[r][c]==2)
-                    if(pr.intersects(new Rectangle(c*tileSize,r*tileSize,tileSize,tileSize)))
-                        return true;
-        return false;
-    }
-
-    public boolean checkDeadlyHit(Player p){
-        Rectangle pr = new Rectangle((int)p.x,(int)p.y,p.w,p.h);
-        for(Spike s: spikes) if(s.isActive() && s.getRect().intersects(pr)) return true;
-        for(FakeTile ft: fakeTiles) if(!ft.isSolid() && ft.getRect().intersects(pr)) return true;
-        for(EnemyBlock eb: enemies) if(eb.getRect().intersects(pr)) return true;
-        return false;
-    }
-
-    public int pixelWidth(){return cols*tileSize;}
-    public int pixelHeight(){return rows*tileSize;}
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class TileMap {
+    static final int SOLID_FILL = DrawBatch.argb(90, 60, 30, 255);
+    static final int SOLID_EDGE = DrawBatch.argb(70, 40, 20, 255);
+    static final int GOAL_FILL = DrawBatch.argb(80, 200, 120, 255);
+    static final int GOAL_EDGE = DrawBatch.argb(60, 180, 100, 255);
+    static final int GRID_CELL = 4; // broadphase cell size in tiles
+
+    int tileSize;
+    int cols = 60;
+    int rows = 36;
+    ChunkedTiles tiles;
+    LevelFile file; // backing file of a streamed level, else null
+    int spawnCol, spawnRow;
+    int streamWidth = 960, streamHeight = 640; // area kept loaded around the player
+    Spikes spikes;
+    FakeTiles fakeTiles;
+    Enemies enemies;
+    TimerWheel timers = new TimerWheel(); // trap timers; timers.now is the trap clock
+    int level = 0;
+    int version = 0; // bumped whenever the static tiles change
+    boolean blendFades = true; // fake-tile fade uses a composite; off on the low quality tier
+    TileLayerCache staticLayer = new TileLayerCache(this);
+    DrawBatch batch = new DrawBatch();
+
+    // Broadphase over trap entities, indexed by list position
+    SpatialGrid spikeGrid, fakeGrid, enemyGrid;
+    // Goal tiles merged into horizontal runs: x, y, w, h per region
+    int[] goalRegions = new int[0];
+    int goalRegionCount = 0;
+
+    public TileMap(int t) {
+        tileSize = t;
+        tiles = new ChunkedTiles(cols, rows);
+        spikes = new Spikes(t);
+        fakeTiles = new FakeTiles(t);
+        enemies = new Enemies(t);
+        spikeGrid = new SpatialGrid(GRID_CELL * t);
+        fakeGrid = new SpatialGrid(GRID_CELL * t);
+        enemyGrid = new SpatialGrid(GRID_CELL * t);
+    }
+
+    public void createLevel(int lvl) {
+        install(Level.open(lvl, tileSize, streamWidth, streamHeight));
+    }
+
+    // Takes over a prepared level; cheap enough to call mid-fade
+    void install(Level l) {
+        level = l.number;
+        version++;
+        cols = l.cols;
+        rows = l.rows;
+        tiles = l.tiles;
+        file = l.file;
+        if (file != null) {
+            tiles.setStreamRadius(streamWidth, streamHeight, tileSize);
+            tiles.onLoad = this::chunkLoaded;
+        }
+        spawnCol = l.spawnCol;
+        spawnRow = l.spawnRow;
+        spikes = l.spikes;
+        fakeTiles = l.fakeTiles;
+        enemies = l.enemies;
+        goalRegions = l.goalRegions;
+        goalRegionCount = goalRegions.length / 4;
+        buildBroadphase();
+    }
+
+    // Keeps the tile chunks around a pixel position loaded
+    void streamAround(double x, double y) {
+        tiles.stream((int) (y / tileSize), (int) (x / tileSize));
+    }
+
+    // Goal tiles merged into horizontal runs, as x, y, w, h pixel quads
+    static int[] findGoalRegions(int cols, int rows, int tileSize, LevelFile.TileSource tiles) {
+        int[] out = new int[16];
+        int n = 0;
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++) {
+                if (tiles.tileAt(r, c) != 2) continue;
+                int start = c;
+                while (c + 1 < cols && tiles.tileAt(r, c + 1) == 2) c++;
+                if (n + 4 > out.length) out = Arrays.copyOf(out, out.length * 2);
+                out[n++] = start * tileSize;
+                out[n++] = r * tileSize;
+                out[n++] = (c - start + 1) * tileSize;
+                out[n++] = tileSize;
+            }
+        return Arrays.copyOf(out, n);
+    }
+
+    int tileAt(int r, int c) {
+        return tiles.get(r, c);
+    }
+
+    // Collision queries against solid tiles plus fake tiles that are still solid
+    boolean isSolid(int r, int c) {
+        return tiles.isSolid(r, c);
+    }
+
+    boolean solidSpan(int r, int c0, int c1) {
+        return tiles.solidSpan(r, c0, c1);
+    }
+
+    boolean solidColumn(int c, int r0, int r1) {
+        return tiles.solidColumn(c, r0, r1);
+    }
+
+    // Recomputes a cell's solid bit after a fake tile there changed state
+    void refreshSolid(int r, int c){
+        if(!tiles.resident(r, c)) return; // chunkLoaded() catches it up later
+        boolean s = tiles.get(r, c) == ChunkedTiles.SOLID;
+        int n = fakeGrid.query(c * tileSize + 1, r * tileSize + 1, tileSize - 2, tileSize - 2);
+        for(int i=0;i<n && !s;i++){
+            int f = fakeGrid.result[i];
+            s = fakeTiles.solid[f] && fakeTiles.col[f] == c && fakeTiles.row[f] == r;
+        }
+        tiles.setSolid(r, c, s);
+    }
+
+    // A streamed chunk arrives with static bits only; add the solid fakes on it
+    void chunkLoaded(int index){
+        int px = ChunkedTiles.SIZE * tileSize;
+        int x = index % tiles.chunkCols * px, y = index / tiles.chunkCols * px;
+        int n = fakeGrid.query(x + 1, y + 1, px - 2, px - 2);
+        for(int i=0;i<n;i++){
+            int f = fakeGrid.result[i];
+            if(fakeTiles.solid[f]) tiles.setSolid(fakeTiles.row[f], fakeTiles.col[f], true);
+        }
+    }
+
+    void refreshFakeSolids(){
+        for(int i=0;i<fakeTiles.count;i++) refreshSolid(fakeTiles.row[i], fakeTiles.col[i]);
+    }
+
+    // Registers every trap in the grids; call after the trap lists change
+    void buildBroadphase() {
+        spikeGrid.reset(pixelWidth(), pixelHeight(), spikes.count);
+        fakeGrid.reset(pixelWidth(), pixelHeight(), fakeTiles.count);
+        enemyGrid.reset(pixelWidth(), pixelHeight(), enemies.count);
+        for (int i = 0; i < spikes.count; i++)
+            spikeGrid.insert(i, spikes.x[i], spikes.baseY[i] - Spikes.MAX_HEIGHT, tileSize, Spikes.MAX_HEIGHT);
+        for (int i = 0; i < fakeTiles.count; i++)
+            fakeGrid.insert(i, fakeTiles.x[i], fakeTiles.y[i], tileSize, tileSize);
+        // Enemies go in once over their whole swing, so moving them never touches the grid
+        for (int i = 0; i < enemies.count; i++) {
+            double ax = Math.abs(enemies.ampX[i]), ay = Math.abs(enemies.ampY[i]);
+            enemyGrid.insert(i, enemies.baseX[i] - ax, enemies.baseY[i] - ay, tileSize + 2 * ax, tileSize + 2 * ay);
+        }
+        timers.clear();
+        refreshFakeSolids();
+    }
+
+    public void resetTraps() {
+        spikes.reset();
+        fakeTiles.reset();
+        timers.clear();
+        refreshChangedFakes();
+    }
+
+    void refreshChangedFakes() {
+        for (int i = 0; i < fakeTiles.changedCount; i++) {
+            int f = fakeTiles.changed[i];
+            refreshSolid(fakeTiles.row[f], fakeTiles.col[f]);
+        }
+    }
+
+    // Draws the whole map, e.g. into an offscreen image
+    public void render(Graphics2D g) {
+        render(g, new Viewport(0, 0, pixelWidth(), pixelHeight()));
+    }
+
+    // Draws only the chunks and entities that overlap the view
+    public void render(Graphics2D g, Viewport view) {
+        staticLayer.render(g, view);
+        // One layer per entity kind keeps the old drawing order between kinds
+        batch.layer = 0;
+        fakeTiles.render(batch, view, blendFades, timers.now);
+        batch.layer = 1;
+        enemies.render(batch, view);
+        batch.layer = 2;
+        spikes.render(batch, view, timers.now);
+        batch.flush(g);
+    }
+
+    // Marks every trap in view that would not be drawn the way it was last
+    // time; the static tiles only change with the level, which redraws it all
+    void damage(Viewport view, FrameDamage d) {
+        int now = timers.now;
+        int n = spikeGrid.query(view.x, view.y, view.w, view.h);
+        for(int i=0;i<n;i++){
+            int s = spikeGrid.result[i];
+            if(spikes.height(s, now) != spikes.drawn[s])
+                d.addWorld(spikes.x[s], spikes.baseY[s] - Spikes.MAX_HEIGHT, tileSize, (int) Spikes.MAX_HEIGHT);
+        }
+        n = fakeGrid.query(view.x, view.y, view.w, view.h);
+        for(int i=0;i<n;i++){
+            int f = fakeGrid.result[i];
+            if(fakeTiles.shade(f, now, blendFades) != fakeTiles.drawn[f])
+                d.addWorld(fakeTiles.x[f], fakeTiles.y[f], tileSize, tileSize);
+        }
+        n = enemyGrid.query(view.x, view.y, view.w, view.h);
+        for(int i=0;i<n;i++){
+            int e = enemyGrid.result[i];
+            int x = (int) enemies.cx[e], y = (int) enemies.cy[e];
+            if(x == enemies.drawnX[e] && y == enemies.drawnY[e]) continue;
+            d.addWorld(x, y, tileSize, tileSize);
+            if(enemies.drawnX[e] != Integer.MIN_VALUE) d.addWorld(enemies.drawnX[e], enemies.drawnY[e], tileSize, tileSize);
+        }
+    }
+
+    // Draws solid and goal tiles in the inclusive cell range, clamped to the map
+    void renderStaticTiles(Graphics2D g, int c0, int r0, int c1, int r1){
+        r0=Math.max(r0,0); c0=Math.max(c0,0);
+        r1=Math.min(r1,rows-1); c1=Math.min(c1,cols-1);
+        for(int r=r0;r<=r1;r++)
+            for(int c=c0;c<=c1;c++){
+                int t = tiles.get(r, c);
+                if(t==1){
+                    batch.fillRect(c*tileSize,r*tileSize,tileSize,tileSize,SOLID_FILL);
+                    batch.drawRect(c*tileSize,r*tileSize,tileSize,tileSize,SOLID_EDGE);
+                } else if(t==2){
+                    batch.fillRect(c*tileSize,r*tileSize,tileSize,tileSize,GOAL_FILL);
+                    batch.drawRect(c*tileSize,r*tileSize,tileSize,tileSize,GOAL_EDGE);
+                }
+            }
+        batch.flush(g);
+    }
+
+    boolean hasStaticTiles(int c0, int r0, int c1, int r1){
+        r0=Math.max(r0,0); c0=Math.max(c0,0);
+        r1=Math.min(r1,rows-1); c1=Math.min(c1,cols-1);
+        for(int r=r0;r<=r1;r++)
+            for(int c=c0;c<=c1;c++)
+                if(tiles.get(r, c)!=0) return true;
+        return false;
+    }
+
+    // Only traps near the player are looked at; everything else sleeps until
+    // the player comes close or one of its timers fires. Rising spikes and
+    // fading fakes are worked out from the clock when needed. Enemies all
+    // move every tick.
+    public void update(Player p){
+        timers.advance();
+        fakeTiles.changedCount = 0;
+        int t = FakeTiles.TOUCH;
+        int n = fakeGrid.query(p.x - t, p.y - t, p.w + 2 * t, p.h + 2 * t);
+        for(int i=0;i<n;i++) fakeTiles.touch(fakeGrid.result[i], p, timers);
+        for(int i=0;i<timers.firedCount;i++) fakeTiles.fire(timers.fired[i], timers);
+        refreshChangedFakes();
+
+        // Spikes trigger on horizontal distance alone, so scan full columns
+        double reach = Spikes.TRIGGER_DIST + tileSize;
+        n = spikeGrid.query(p.x + p.w / 2.0 - reach, 0, reach * 2, pixelHeight());
+        for(int i=0;i<n;i++) spikes.trigger(spikeGrid.result[i], p.x + p.w / 2.0, timers.now);
+
+        enemies.update();
+    }
+
+    public boolean checkGoal(Player p){
+        for(int i=0;i<goalRegionCount*4;i+=4)
+            if(Aabb.overlaps(p, goalRegions[i], goalRegions[i+1], goalRegions[i+2], goalRegions[i+3]))
+                return true;
+        return false;
+    }
+
+    public boolean checkDeadlyHit(Player p){
+        int px = (int)p.x, py = (int)p.y;
+        int n = spikeGrid.query(px, py, p.w, p.h);
+        for(int i=0;i<n;i++){
+            int s = spikeGrid.result[i];
+            if(spikes.isActive(s, timers.now) && spikes.hits(s, p, timers.now)) return true;
+        }
+        n = fakeGrid.query(px, py, p.w, p.h);
+        for(int i=0;i<n;i++){
+            int f = fakeGrid.result[i];
+            if(!fakeTiles.solid[f] && fakeTiles.hits(f, p)) return true;
+        }
+        // Enemies are queried over the player's whole step; their grid boxes already cover their swing
+        int sx = (int)Math.min(p.x, p.prevX) - 1, sy = (int)Math.min(p.y, p.prevY) - 1;
+        int sw = (int)Math.abs(p.x - p.prevX) + p.w + 2, sh = (int)Math.abs(p.y - p.prevY) + p.h + 2;
+        n = enemyGrid.query(sx, sy, sw, sh);
+        for(int i=0;i<n;i++){
+            int e = enemyGrid.result[i];
+            if(enemies.hits(e, p) || enemies.sweptHits(e, p)) return true;
+        }
+        return false;
+    }
+
+    // Dynamic trap state only; the static tiles are implied by the level number
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(level);
+        out.writeInt(timers.now);
+        spikes.writeState(out);
+        fakeTiles.writeState(out);
+        enemies.writeState(out);
+    }
+
+    void readState(DataInput in) throws IOException {
+        int lvl = in.readInt();
+        if(lvl != level) createLevel(lvl);
+        timers.clear();
+        timers.now = in.readInt();
+        spikes.readState(in);
+        fakeTiles.readState(in);
+        enemies.readState(in);
+        // Re-derive the timers and solid bits from the restored traps
+        fakeTiles.schedule(timers);
+        refreshFakeSolids();
+    }
+
+    public int pixelWidth(){return cols*tileSize;}
+    public int pixelHeight(){return rows*tileSize;}
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+
+// Hierarchical timing wheel for trap timers. An event is an int payload due
+// on a given tick; scheduling and firing cost O(1) however many timers are
+// pending, so ticking costs only what is due, not what is waiting.
+//
+// LEVELS wheels of SLOTS slots each: level 0 holds events due within SLOTS
+// ticks, one slot per tick; each level up spans SLOTS times more per slot.
+// When a lower wheel wraps, the next slot of the wheel above is spread back
+// down. The horizon is SLOTS^LEVELS ticks (about 77 hours at 60 Hz).
+public class TimerWheel {
+    static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 4;
+
+    int now = 0; // last tick advanced to
+    final int[][] payloads = new int[LEVELS * SLOTS][];
+    final int[][] dues = new int[LEVELS * SLOTS][];
+    final int[] counts = new int[LEVELS * SLOTS];
+    int pending = 0;
+    // Events fired by the last advance(), in the order they were scheduled
+    int[] fired = new int[16];
+    int firedCount = 0;
+
+    // Fires payload delay ticks from now; delay must be at least 1
+    void schedule(int delay, int payload) {
+        insert(now + Math.max(1, delay), payload);
+        pending++;
+    }
+
+    void insert(int due, int payload) {
+        int delta = due - now, level = 0;
+        while (level < LEVELS - 1 && delta >= 1 << (BITS * (level + 1))) level++;
+        int slot = level * SLOTS + (due >>> (BITS * level) & MASK);
+        int n = counts[slot];
+        if (payloads[slot] == null) {
+            payloads[slot] = new int[4];
+            dues[slot] = new int[4];
+        } else if (n == payloads[slot].length) {
+            payloads[slot] = Arrays.copyOf(payloads[slot], n * 2);
+            dues[slot] = Arrays.copyOf(dues[slot], n * 2);
+        }
+        payloads[slot][n] = payload;
+        dues[slot][n] = due;
+        counts[slot] = n + 1;
+    }
+
+    // Moves the clock on one tick and collects what is due into fired[]
+    void advance() {
+        now++;
+        firedCount = 0;
+        if (pending == 0) return;
+        // Highest level first, so events cascade all the way down this tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1 << (BITS * level)) - 1)) != 0) continue;
+            int slot = level * SLOTS + (now >>> (BITS * level) & MASK);
+            int n = counts[slot];
+            counts[slot] = 0;
+            for (int i = 0; i < n; i++) insert(dues[slot][i], payloads[slot][i]);
+        }
+        int slot = now & MASK;
+        int n = counts[slot];
+        if (n == 0) return;
+        if (fired.length < n) fired = new int[Math.max(n, fired.length * 2)];
+        System.arraycopy(payloads[slot], 0, fired, 0, n);
+        firedCount = n;
+        counts[slot] = 0;
+        pending -= n;
+    }
+
+    // Drops every pending event; the clock keeps its value
+    void clear() {
+        Arrays.fill(counts, 0);
+        pending = 0;
+        firedCount = 0;
+    }
+}
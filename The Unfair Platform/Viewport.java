@@ -0,0 +1,37 @@
+// Visible world rectangle for the frame being drawn, plus culling counters.
+// GamePanel sets it from the (interpolated) Camera bounds before rendering.
+public class Viewport {
+    double x, y, w, h;
+
+    // Per-frame counters, reset by set(); the F3 overlay and the stats dump show them
+    int chunksDrawn, chunksSkipped;
+    int entitiesDrawn, entitiesSkipped;
+
+    public Viewport(double x, double y, double w, double h) { set(x, y, w, h); }
+
+    void set(double x, double y, double w, double h) {
+        this.x = x; this.y = y; this.w = w; this.h = h;
+        chunksDrawn = chunksSkipped = 0;
+        entitiesDrawn = entitiesSkipped = 0;
+    }
+
+    // Pixel rectangle test; outlines reach one pixel past w/h, so widen by one
+    boolean overlaps(double rx, double ry, double rw, double rh) {
+        return rx < x + w && rx + rw + 1 > x && ry < y + h && ry + rh + 1 > y;
+    }
+
+    boolean cullEntity(double rx, double ry, double rw, double rh) {
+        if (overlaps(rx, ry, rw, rh)) { entitiesDrawn++; return false; }
+        entitiesSkipped++;
+        return true;
+    }
+
+    // Inclusive range of cells of the given size touched by the view
+    int firstCol(int size) { return (int) Math.floor((x - 1) / size); }
+    int lastCol(int size) { return (int) Math.floor((x + w) / size); }
+    int firstRow(int size) { return (int) Math.floor((y - 1) / size); }
+    int lastRow(int size) { return (int) Math.floor((y + h) / size); }
+
+    int drawn() { return chunksDrawn + entitiesDrawn; }
+    int skipped() { return chunksSkipped + entitiesSkipped; }
+}
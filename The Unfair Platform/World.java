@@ -0,0 +1,288 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// Headless game simulation: level, player, traps, camera and the
+// intro/death/goal/fade state machine. Advanced one tick at a time with an
+// input bitmask; needs no display, window or asset files, so it can run under
+// java.awt.headless=true, far faster than real time, many instances at once.
+public class World {
+    // Input bits for step()
+    static final int LEFT = 1;
+    static final int RIGHT = 2;
+    static final int JUMP_HELD = 4;
+    static final int JUMP_PRESSED = 8; // a press happened since the last tick
+    static final int RESET = 16;       // the R key was pressed since the last tick
+    static final int HELD = LEFT | RIGHT | JUMP_HELD;
+    // The top bits say how far into the tick the input changed, in eighths:
+    // the tick runs that long on the previous tick's held keys first
+    static final int PHASE_SHIFT = 5, PHASES = 8;
+
+    static final int LEVEL_COUNT = 3;
+    static final int TILE = 32;
+    static final double MAX_SPEED = 5.2; // horizontal, pixels per tick
+    // Fixed: speeds, trap timings and delays are all counted in these ticks.
+    // Displays faster than this get frames interpolated between ticks.
+    static final int TICK_RATE = 60;
+
+    TileMap map;
+    Player player;
+    Camera cam;
+    int currentLevel = 1;
+    boolean showingIntro = true;
+    int introTimer = 0;
+    double fadeAlpha = 0.0;
+    int fadeState = 0;
+    int fadeFrames;
+    int fadeCounter = 0;
+    boolean playerDied = false;
+    int deathTimer = 0;
+    int deathDelay = 60; // 1 second death animation
+    boolean jumpQueued = false;
+    int heldInput = 0; // last tick's held keys, for a tick whose input changed part way
+    long ticks = 0;
+    // The level after this one, prepared in the background during play
+    Future<Level> nextLevel;
+    int nextLevelNumber;
+
+    // Set by step() when the last level wrapped around to level 1
+    boolean gameCompleted = false;
+    FrameStats stats; // phase timings, only when the game is profiling itself
+
+    public World(int viewW, int viewH) {
+        fadeFrames = TICK_RATE;
+        map = new TileMap(TILE);
+        map.streamWidth = viewW;
+        map.streamHeight = viewH;
+        player = new Player(64, 64, TILE - 6, TILE - 2);
+        loadLevel(currentLevel);
+        cam = new Camera(0, 0, viewW, viewH);
+    }
+
+    void loadLevel(int lvl) {
+        map.install(takeLevel(lvl));
+        prefetchNext();
+        showingIntro = true;
+        introTimer = 0;
+
+        respawn();
+
+        fadeAlpha = 1.0;
+        fadeState = 2;
+        fadeCounter = 0;
+        playerDied = false;
+        deathTimer = 0;
+    }
+
+    void respawn() {
+        int groundLevel = map.spawnRow * map.tileSize - player.h;
+        player.reset(map.spawnCol * map.tileSize, groundLevel);
+    }
+
+    // The prefetched level if it is the one wanted, else a synchronous load
+    Level takeLevel(int lvl) {
+        Future<Level> f = nextLevel;
+        nextLevel = null;
+        if (f != null && nextLevelNumber == lvl) {
+            try {
+                return f.get(); // normally finished long ago
+            } catch (InterruptedException | ExecutionException e) {
+                System.out.println("Level prefetch failed: " + e.getMessage());
+            }
+        } else if (f != null) {
+            f.cancel(false);
+        }
+        return Level.open(lvl, TILE, map.streamWidth, map.streamHeight);
+    }
+
+    void prefetchNext() {
+        int next = currentLevel % LEVEL_COUNT + 1;
+        if (nextLevel != null && nextLevelNumber == next) return;
+        if (nextLevel != null) nextLevel.cancel(false);
+        nextLevelNumber = next;
+        nextLevel = Level.prefetch(next, TILE, map.streamWidth, map.streamHeight);
+    }
+
+    void beginNextLevel() {
+        fadeState = 1;
+        fadeCounter = 0;
+    }
+
+    void doAdvanceLevel() {
+        currentLevel++;
+        if (currentLevel > LEVEL_COUNT) {
+            gameCompleted = true;
+            currentLevel = 1;
+        }
+        loadLevel(currentLevel);
+    }
+
+    // Full simulation state as bytes; restore() on a World with the same
+    // tick rate and view size continues exactly where this one was.
+    byte[] snapshot() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeLong(ticks);
+            out.writeInt(currentLevel);
+            out.writeBoolean(showingIntro);
+            out.writeInt(introTimer);
+            out.writeDouble(fadeAlpha);
+            out.writeInt(fadeState);
+            out.writeInt(fadeCounter);
+            out.writeBoolean(playerDied);
+            out.writeInt(deathTimer);
+            out.writeBoolean(jumpQueued);
+            out.writeInt(heldInput);
+            map.writeState(out);
+            player.writeState(out);
+            cam.writeState(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    void restore(byte[] state) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+        try {
+            ticks = in.readLong();
+            currentLevel = in.readInt();
+            showingIntro = in.readBoolean();
+            introTimer = in.readInt();
+            fadeAlpha = in.readDouble();
+            fadeState = in.readInt();
+            fadeCounter = in.readInt();
+            playerDied = in.readBoolean();
+            deathTimer = in.readInt();
+            jumpQueued = in.readBoolean();
+            heldInput = in.readInt();
+            map.readState(in);
+            player.readState(in);
+            cam.readState(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        gameCompleted = false;
+        prefetchNext();
+    }
+
+    // One fixed simulation step
+    void step(int input) {
+        ticks++;
+        gameCompleted = false;
+        player.savePrevious();
+        cam.savePrevious();
+        map.streamAround(player.x + player.w / 2.0, player.y + player.h / 2.0);
+        if ((input & JUMP_PRESSED) != 0) jumpQueued = true;
+        int before = heldInput;
+        heldInput = input & HELD;
+
+        if ((input & RESET) != 0) {
+            map.resetTraps();
+            respawn();
+            playerDied = false;
+            deathTimer = 0;
+        }
+
+        if (fadeState == 1) {
+            fadeCounter++;
+            fadeAlpha = Math.min(1.0, (double) fadeCounter / fadeFrames);
+            if (fadeCounter >= fadeFrames) {
+                doAdvanceLevel();
+                fadeState = 2;
+                fadeCounter = 0;
+            }
+            return;
+        } else if (fadeState == 2) {
+            fadeCounter++;
+            fadeAlpha = 1.0 - Math.min(1.0, (double) fadeCounter / fadeFrames);
+            if (fadeCounter >= fadeFrames) {
+                fadeState = 0;
+                fadeAlpha = 0.0;
+            }
+        }
+
+        if (showingIntro) {
+            introTimer++;
+            if (introTimer > TICK_RATE * 2) showingIntro = false;
+            return;
+        }
+
+        // Death animation sequence
+        if (playerDied) {
+            deathTimer++;
+            // Show falling animation for a moment before respawn
+            if (deathTimer >= deathDelay) {
+                playerDied = false;
+                deathTimer = 0;
+                map.resetTraps();
+                respawn();
+            } else {
+                // Continue physics during death animation so player falls
+                player.updatePhysicsDuringDeath(map);
+                cam.updateTarget(player);
+                cam.lerpToTarget(0.08);
+            }
+            return;
+        }
+
+        long t = stats == null ? 0 : System.nanoTime();
+        int phase = input >>> PHASE_SHIFT & (PHASES - 1);
+        if (phase == 0) {
+            steer(input, 1.0, true);
+            player.updatePhysics(map);
+        } else {
+            // The part of the tick before the input arrived, then the rest
+            double f = (double) phase / PHASES;
+            steer(before, f, false);
+            player.updatePhysics(map, f);
+            steer(input, 1 - f, true);
+            player.updatePhysics(map, 1 - f);
+        }
+        if (stats != null) t = stats.lap(FrameStats.PHYSICS, t);
+        map.update(player);
+        if (stats != null) t = stats.lap(FrameStats.TRAPS, t);
+        cam.updateTarget(player);
+        cam.lerpToTarget(0.08);
+
+        if (stats != null) t = System.nanoTime();
+        boolean goal = map.checkGoal(player);
+        boolean died = player.y > map.pixelHeight() + 200 || map.checkDeadlyHit(player);
+        if (stats != null) stats.lap(FrameStats.CHECKS, t);
+        if (goal) beginNextLevel();
+        if (died) {
+            playerDied = true;
+            deathTimer = 0;
+            player.startDeathAnimation();
+        }
+    }
+
+    // Applies the held keys for dt ticks, and a queued jump if jump is set
+    void steer(int input, double dt, boolean jump) {
+        boolean left = (input & LEFT) != 0;
+        boolean right = (input & RIGHT) != 0;
+        boolean jumpHeld = (input & JUMP_HELD) != 0;
+        double accel = 0.45;
+        double maxSpeed = MAX_SPEED;
+        double airControl = 0.5;
+
+        if (left && !right)
+            player.applyHorizontal(-accel * dt, maxSpeed, jumpHeld ? 1.0 : airControl);
+        else if (right && !left)
+            player.applyHorizontal(accel * dt, maxSpeed, jumpHeld ? 1.0 : airControl);
+        else player.applyFriction(dt);
+
+        if (jump && jumpQueued) {
+            player.tryJump();
+            jumpQueued = false;
+        }
+
+        player.setJumpHeld(jumpHeld);
+    }
+}
@@ -0,0 +1,45 @@
+import bench.Workloads;
+
+// A player running right along the ground, jumping now and then, and
+// respawning when it falls or nears the end of the map.
+public class PhysicsWorkload implements Workloads.Physics {
+    TileMap map;
+    Player player;
+    double groundY;
+    int tick;
+
+    @Override
+    public void setup(int level) {
+        map = SyntheticMaps.level(level, 0);
+        player = SyntheticMaps.playerOnGround(map);
+        groundY = player.y;
+    }
+
+    void advanceInput() {
+        if (player.x > map.pixelWidth() - 200 || player.y > map.pixelHeight()) player.reset(64, groundY);
+        player.applyHorizontal(0.45, 5.2, 1.0);
+        if ((++tick & 63) == 0) player.tryJump();
+    }
+
+    @Override
+    public Object updatePhysics() {
+        advanceInput();
+        player.updatePhysics(map);
+        return player;
+    }
+
+    @Override
+    public Object moveHorizontal() {
+        advanceInput();
+        player.moveHorizontal(map, player.dx);
+        return player;
+    }
+
+    @Override
+    public Object moveVertical() {
+        advanceInput();
+        if (!player.onGround) player.dy = Math.min(player.dy + player.gravity, player.maxFall);
+        player.moveVertical(map, player.dy);
+        return player;
+    }
+}
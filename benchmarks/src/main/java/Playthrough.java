@@ -0,0 +1,241 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Properties;
+
+// Whole-game macro benchmark: plays all three levels start to finish through
+// GamePanel with a scripted route (found by Solver), ticking and rendering
+// every frame into an offscreen image, and reports throughput, frame-time
+// percentiles and allocation. Given a baseline file it fails (exit 1) when a
+// result is worse than the baseline by more than the tolerance; if the file
+// does not exist yet, it is written from this run instead, so each machine
+// keeps its own (it is not checked in).
+//
+// Only numbers that carry across runs are compared: allocation per frame,
+// and the mean and median frame time relative to a calibration run in the
+// same JVM (a fixed sort that touches nothing in the game), so a slower or
+// busier machine does not fail the gate by itself. Milliseconds, fps and
+// p99 are printed for reading.
+//
+// From the folder that holds the images and levels:
+//   java -Djava.awt.headless=true -cp ../benchmarks/target/benchmarks.jar Playthrough [baseline]
+// -Dtup.playRuns= (5) and -Dtup.playWarmup= (2) set the number of playthroughs,
+// -Dtup.playTolerance= (0.25) the allowed frame time regression as a fraction,
+// -Dtup.allocTolerance= (0.10) the allowed allocation regression.
+public class Playthrough {
+    // The route as runs of held keys: L left, R right, H jump held,
+    // P jump pressed (on that run's first tick), - nothing; then the tick count
+    static final String ROUTE =
+            "-121 RH24 RHP1 RH63 RHP1 RH3 -4 RH32 RHP1 RH39 "
+            + "-181 RH8 RHP1 RH31 -4 RH4 RHP1 RH39 RHP1 RH47 RHP1 RH39 RHP1 RH27 "
+            + "-190 RH4 RHP1 RH35 LH4 HP1 H3 RH4 -4 RH4 LH4 RH4 -4 LH4 -4 LH4 RHP1 RH23 LH4 -4 LH4 "
+            + "RHP1 RH19 LH8 -12 RHP1 RH7 LH4 RH4 LH4 -8 RH4 -4 HP1 H3 RH8 LH4 RH8 -4 RH4 -8 HP1 H3 "
+            + "RH24 LH8 LHP1 LH3 RH12 -4 RH8 -4 LH8 HP1 H3 RH8 -4 RH4 LH4 RH12 RHP1 RH51 LH4 RH8";
+    static final int WIDTH = 960, HEIGHT = 640;
+    static final int MAX_IDLE = 600; // ticks to wait after the route for the game to wrap
+
+    // All better lower; the timings are in thousandths of the calibration
+    // time. p99 swings with GC and the OS too much to gate on; it is printed.
+    static final String[] METRICS = {"mean_frame_units", "p50_frame_units", "alloc_bytes_per_frame"};
+    static final int CALIBRATION_SIZE = 1 << 18, CALIBRATION_REPS = 15;
+
+    final BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final String[] keys; // per run of the route
+    final int[] ticks;
+
+    // Totals over the measured runs
+    FrameStats stats = new FrameStats();
+    long frames = 0, nanos = 0, allocated = 0;
+    long unit = Long.MAX_VALUE; // best calibration time
+
+    Playthrough() {
+        String[] runs = ROUTE.split(" ");
+        keys = new String[runs.length];
+        ticks = new int[runs.length];
+        for (int i = 0; i < runs.length; i++) {
+            int k = 0;
+            while (!Character.isDigit(runs[i].charAt(k))) k++;
+            keys[i] = runs[i].substring(0, k);
+            ticks[i] = Integer.parseInt(runs[i].substring(k));
+        }
+    }
+
+    // One full playthrough on a fresh panel; false if the route no longer wins
+    boolean play(boolean measure) {
+        GamePanel game = new GamePanel(WIDTH, HEIGHT);
+        waitForImages(game);
+        if (measure) game.stats = game.world.stats = stats;
+        stats.lastFrame = 0; // the gap since the last run is not a frame
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int n = 0, held = 0;
+        for (int r = 0; r < keys.length; r++) {
+            int want = (keys[r].indexOf('L') >= 0 ? World.LEFT : 0) | (keys[r].indexOf('R') >= 0 ? World.RIGHT : 0)
+                    | (keys[r].indexOf('H') >= 0 ? World.JUMP_HELD : 0);
+            press(game, held, want, keys[r].indexOf('P') >= 0);
+            held = want;
+            for (int i = 0; i < ticks[r]; i++) {
+                frame(game);
+                n++;
+            }
+        }
+        press(game, held, 0, false);
+        boolean won = false;
+        for (int i = 0; i < MAX_IDLE && !won; i++) {
+            frame(game);
+            n++;
+            won = game.world.gameCompleted;
+        }
+        if (measure) {
+            nanos += System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - bytes;
+            frames += n;
+        }
+        return won;
+    }
+
+    // Queues the key events from held to want, as the event thread would; they
+    // are stamped at the start of the next tick, so they apply to all of it
+    static void press(GamePanel game, int held, int want, boolean jump) {
+        long when = game.tickEnd;
+        if ((want & ~held) != 0) game.input.offer(want & ~held | InputQueue.DOWN, when);
+        if ((held & ~want) != 0) game.input.offer(held & ~want, when);
+        if (jump) game.input.offer(World.JUMP_PRESSED | InputQueue.DOWN, when);
+    }
+
+    void frame(GamePanel game) {
+        game.tick();
+        Graphics2D g = frame.createGraphics();
+        long t = System.nanoTime();
+        game.render(g, 1.0);
+        game.stats.lap(FrameStats.PAINT, t);
+        game.stats.endFrame();
+        g.dispose();
+    }
+
+    // Frames drawn before the images arrive would take the cheaper fallback path
+    static void waitForImages(GamePanel game) {
+        long end = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < end && !loaded(game)) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    static boolean loaded(GamePanel game) {
+        for (Assets.Handle h : game.backgroundImages) if (h.image == null) return false;
+        PlayerSprites s = game.sprites;
+        return s.idleImg.image != null && s.runRightImg.image != null && s.runLeftImg.image != null && s.jumpImg.image != null;
+    }
+
+    Properties results() {
+        FrameStats.Histogram h = stats.phases[FrameStats.FRAME];
+        Properties p = new Properties();
+        p.setProperty("mean_frame_units", format(1000.0 * nanos / frames / unit));
+        p.setProperty("p50_frame_units", format(1000.0 * h.percentile(0.5) / unit));
+        p.setProperty("alloc_bytes_per_frame", format((double) allocated / frames));
+        return p;
+    }
+
+    // Times a fixed sort of the same shuffled array, keeping the best; run
+    // both before and after the playthroughs, so one busy moment does not
+    // set the unit
+    void calibrate() {
+        int[] data = new int[CALIBRATION_SIZE];
+        for (int rep = 0; rep < CALIBRATION_REPS; rep++) {
+            java.util.Random r = new java.util.Random(1);
+            for (int i = 0; i < data.length; i++) data[i] = r.nextInt();
+            long t = System.nanoTime();
+            java.util.Arrays.sort(data);
+            unit = Math.min(unit, System.nanoTime() - t);
+        }
+    }
+
+    static String format(double v) {
+        return String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    // Prints each metric against the baseline; true if none regressed
+    static boolean compare(Properties now, Properties base, double tolerance, double allocTolerance) {
+        boolean ok = true;
+        for (String m : METRICS) {
+            double v = Double.parseDouble(now.getProperty(m));
+            String b = base.getProperty(m);
+            if (b == null) {
+                System.out.printf("%-22s %12.3f  (no baseline)%n", m, v);
+                continue;
+            }
+            double ref = Double.parseDouble(b);
+            // Allocation may sit near zero, so it also gets a small absolute allowance
+            boolean alloc = m.startsWith("alloc");
+            boolean bad = v > ref * (1 + (alloc ? allocTolerance : tolerance)) + (alloc ? 256 : 0);
+            System.out.printf("%-22s %12.3f  baseline %12.3f  %+6.1f%%%s%n", m, v, ref,
+                    ref == 0 ? 0 : (v - ref) / ref * 100, bad ? "  REGRESSED" : "");
+            ok &= !bad;
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        System.setProperty("tup.loop", "timer");
+        if (System.getProperty("tup.quality") == null) System.setProperty("tup.quality", "high");
+        int runs = Integer.getInteger("tup.playRuns", 5);
+        int warmup = Integer.getInteger("tup.playWarmup", 2);
+        double tolerance = Double.parseDouble(System.getProperty("tup.playTolerance", "0.25"));
+        double allocTolerance = Double.parseDouble(System.getProperty("tup.allocTolerance", "0.10"));
+
+        Playthrough p = new Playthrough();
+        p.calibrate();
+        for (int i = 0; i < warmup + runs; i++) {
+            if (!p.play(i >= warmup)) {
+                System.out.println("The scripted route no longer finishes the game");
+                System.exit(1);
+            }
+        }
+        p.calibrate();
+        System.out.printf("%d playthroughs, %d frames, %.2f s, %.1f fps; calibration unit %.3f ms%n",
+                runs, p.frames, p.nanos / 1e9, p.frames * 1e9 / p.nanos, p.unit / 1e6);
+        for (int i = 0; i < FrameStats.NAMES.length; i++) {
+            FrameStats.Histogram h = p.stats.phases[i];
+            System.out.printf("  %-8s p50 %7.3f  p99 %7.3f  max %7.3f ms%n", FrameStats.NAMES[i],
+                    h.percentile(0.5) / 1e6, h.percentile(0.99) / 1e6, h.max / 1e6);
+        }
+        Properties results = p.results();
+        if (args.length == 0) {
+            compare(results, new Properties(), tolerance, allocTolerance);
+            return;
+        }
+        File file = new File(args[0]);
+        if (!file.exists()) {
+            compare(results, new Properties(), tolerance, allocTolerance);
+            try (Writer w = new FileWriter(file)) {
+                results.store(w, "Playthrough baseline");
+            }
+            System.out.println("Saved baseline to " + file);
+            return;
+        }
+        Properties base = new Properties();
+        try (Reader r = new FileReader(file)) {
+            base.load(r);
+        }
+        if (!compare(results, base, tolerance, allocTolerance)) {
+            System.out.println("Regressed against " + file);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.Random;
+
+// Level maps for benchmarks: the real levels, optionally padded with extra
+// traps scattered over the map to measure how costs scale with trap count.
+public final class SyntheticMaps {
+    private SyntheticMaps() {}
+
+    static TileMap level(int lvl, int extraTraps) {
+        TileMap map = new TileMap(World.TILE);
+        map.createLevel(lvl);
+        Random r = new Random(lvl * 7919L + extraTraps);
+        for (int i = 0; i < extraTraps; i++) {
+            int c = r.nextInt(map.cols), row = 1 + r.nextInt(map.rows - 1);
+            switch (i % 3) {
+                case 0 -> map.spikes.add(c, row);
+                case 1 -> map.fakeTiles.add(c, row, r.nextBoolean());
+                default -> map.enemies.addTiles(c, row, 1 + r.nextInt(3), 60 + r.nextInt(120), r.nextBoolean());
+            }
+        }
+        map.buildBroadphase();
+        return map;
+    }
+
+    // Player standing on the level's ground row
+    static Player playerOnGround(TileMap map) {
+        Player p = new Player(64, 64, World.TILE - 6, World.TILE - 2);
+        p.reset(64, (map.rows - 4) * map.tileSize - p.h);
+        return p;
+    }
+
+    // Player positions sweeping the width of the map, for trap benchmarks
+    static double[] sweep(TileMap map, int n) {
+        double[] xs = new double[n];
+        for (int i = 0; i < n; i++) xs[i] = (double) i * (map.pixelWidth() - World.TILE) / n;
+        return xs;
+    }
+}
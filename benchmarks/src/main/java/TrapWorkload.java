@@ -0,0 +1,58 @@
+import bench.Workloads;
+
+import java.awt.*;
+
+// Sweeps the player across the map so traps keep triggering and respawning
+public class TrapWorkload implements Workloads.Traps {
+    TileMap map;
+    Player player;
+    double[] xs;
+    int i;
+    Viewport view = new Viewport(0, 0, 0, 0);
+
+    @Override
+    public void setup(int level, int extraTraps) {
+        map = SyntheticMaps.level(level, extraTraps);
+        player = SyntheticMaps.playerOnGround(map);
+        xs = SyntheticMaps.sweep(map, 1024);
+    }
+
+    // One step as World.step takes it, so swept checks cover the step and
+    // not the whole way from setup
+    void nextPosition() {
+        player.savePrevious();
+        player.x = xs[i++ & 1023];
+        if (player.x < player.prevX) player.savePrevious(); // wrapped to the start: a respawn
+    }
+
+    @Override
+    public void update() {
+        nextPosition();
+        map.update(player);
+    }
+
+    @Override
+    public boolean checkDeadlyHit() {
+        nextPosition();
+        return map.checkDeadlyHit(player);
+    }
+
+    @Override
+    public boolean checkGoal() {
+        nextPosition();
+        return map.checkGoal(player);
+    }
+
+    @Override
+    public int render(Graphics2D g, int viewW, int viewH) {
+        nextPosition();
+        double camX = Math.max(0, player.x - viewW / 2.0), camY = Math.max(0, player.y - viewH / 2.0);
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, viewW, viewH);
+        g.translate(-camX, -camY);
+        view.set(camX, camY, viewW, viewH);
+        map.render(g, view);
+        g.translate(camX, camY);
+        return view.drawn();
+    }
+}
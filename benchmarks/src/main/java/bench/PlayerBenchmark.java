@@ -0,0 +1,40 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Player physics against the real level maps (see PhysicsWorkload)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerBenchmark {
+    @Param({"1", "2", "3"})
+    int level;
+
+    Workloads.Physics physics;
+
+    @Setup
+    public void setup() {
+        physics = Workloads.load("PhysicsWorkload");
+        physics.setup(level);
+    }
+
+    @Benchmark
+    public Object updatePhysics() {
+        return physics.updatePhysics();
+    }
+
+    @Benchmark
+    public Object moveHorizontal() {
+        return physics.moveHorizontal();
+    }
+
+    @Benchmark
+    public Object moveVertical() {
+        return physics.moveVertical();
+    }
+}
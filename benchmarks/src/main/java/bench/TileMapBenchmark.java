@@ -0,0 +1,62 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Trap updates, collision queries and offscreen rendering, at today's trap
+// counts (extraTraps = 0) and with thousands of extra traps (see TrapWorkload)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileMapBenchmark {
+    static final int VIEW_W = 960, VIEW_H = 640;
+
+    @Param({"1", "2", "3"})
+    int level;
+
+    @Param({"0", "1000", "10000", "100000"})
+    int extraTraps;
+
+    Workloads.Traps traps;
+    BufferedImage frame;
+    Graphics2D g;
+
+    @Setup
+    public void setup() {
+        traps = Workloads.load("TrapWorkload");
+        traps.setup(level, extraTraps);
+        frame = new BufferedImage(VIEW_W, VIEW_H, BufferedImage.TYPE_INT_RGB);
+        g = frame.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public void update() {
+        traps.update();
+    }
+
+    @Benchmark
+    public boolean checkDeadlyHit() {
+        return traps.checkDeadlyHit();
+    }
+
+    @Benchmark
+    public boolean checkGoal() {
+        return traps.checkGoal();
+    }
+
+    @Benchmark
+    public int render() {
+        return traps.render(g, VIEW_W, VIEW_H);
+    }
+}
@@ -0,0 +1,36 @@
+package bench;
+
+import java.awt.Graphics2D;
+
+// JMH refuses benchmark classes in the default package, and named packages
+// cannot see the game's default-package classes. So the benchmarks here
+// drive workloads implemented in the default package through these
+// interfaces, loaded by name. Each call site only ever sees one
+// implementation, so the JIT inlines straight through.
+public final class Workloads {
+    private Workloads() {}
+
+    public interface Physics {
+        void setup(int level);
+        Object updatePhysics();
+        Object moveHorizontal();
+        Object moveVertical();
+    }
+
+    public interface Traps {
+        void setup(int level, int extraTraps);
+        void update();
+        boolean checkDeadlyHit();
+        boolean checkGoal();
+        int render(Graphics2D g, int viewW, int viewH);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T load(String className) {
+        try {
+            return (T) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load workload " + className, e);
+        }
+    }
+}
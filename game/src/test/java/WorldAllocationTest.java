@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Once warmed up, World.step() should allocate next to nothing: a tick that
+// starts allocating shows up as GC pauses in play. Loading a level may
+// allocate, so only the ticks after it are counted.
+class WorldAllocationTest {
+    static final int WARMUP = 20_000, TICKS = 40_000; // per level
+    static final long MAX_BYTES = 4 * 1024; // for all the counted ticks together
+
+    final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final long thread = Thread.currentThread().getId();
+    int deaths = 0;
+
+    // Runs right, jumping every half second part way into a tick, and now and
+    // then back left: onto fakes and spikes, dying and respawning
+    static int input(int tick) {
+        int in = tick % 600 < 480 ? World.RIGHT : World.LEFT;
+        if (tick % 30 < 20) in |= World.JUMP_HELD;
+        if (tick % 30 == 0) in |= World.JUMP_PRESSED | 3 << World.PHASE_SHIFT;
+        return in;
+    }
+
+    // Bytes the calling thread allocated over the ticks
+    long play(World w, int ticks) {
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ticks; i++) {
+            boolean died = w.playerDied;
+            w.step(input(i));
+            if (w.playerDied && !died) deaths++;
+        }
+        return threads.getThreadAllocatedBytes(thread) - before;
+    }
+
+    @Test
+    void steadyStateStepDoesNotAllocate() {
+        World w = new World(960, 640);
+        long bytes = 0;
+        for (int lvl = 1; lvl <= World.LEVEL_COUNT; lvl++) {
+            w.loadLevel(lvl);
+            play(w, WARMUP);
+            deaths = 0;
+            bytes += play(w, TICKS);
+            assertTrue(deaths > 0, "level " + lvl + ": the input never reached a trap");
+        }
+        System.out.println(World.LEVEL_COUNT * TICKS + " ticks allocated " + bytes + " bytes");
+        assertTrue(bytes <= MAX_BYTES, World.LEVEL_COUNT * TICKS + " ticks allocated " + bytes
+                + " bytes, over " + MAX_BYTES);
+    }
+}